@@ -0,0 +1,123 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import java.util.Locale;
+
+/**
+ * Payloads used by the benchmarks, shaped after the requests received from the M-Pesa, Airtel, MoMo and TNM flows.
+ *
+ */
+public final class BenchmarkPayloads {
+
+    /**
+     * Number of filler entries added before the entries looked up by the flows in a large custom data array.
+     */
+    private static final int LARGE_CUSTOM_DATA_FILLER_ENTRIES = 48;
+
+    private BenchmarkPayloads() {}
+
+    /**
+     * Returns the channel request sent by the given provider's flow.
+     *
+     * @param provider
+     *            one of MPESA, AIRTEL, MOMO or TNM
+     * @return the channel request JSON
+     */
+    public static String channelRequest(String provider) {
+        return switch (provider.toUpperCase(Locale.ROOT)) {
+            // Channel connector collection request: party lists and an amount object
+            case "MPESA" -> """
+                    {"payer":[{"partyIdType":"MSISDN","partyIdIdentifier":"254708374149"}],
+                    "payee":[{"partyIdType":"ACCOUNTID","partyIdIdentifier":"24450523"}],
+                    "amount":{"amount":"1500","currency":"KES"},
+                    "externalId":"RKL51ZDR4F","note":"Loan repayment"}""";
+            case "AIRTEL" -> """
+                    {"payer":[{"partyIdType":"MSISDN","partyIdIdentifier":"256752345678"}],
+                    "payee":[{"partyIdType":"ACCOUNTID","partyIdIdentifier":"31298641"}],
+                    "amount":{"amount":"25000","currency":"UGX"},
+                    "externalId":"MP230524.1623.C00012","note":"Loan repayment"}""";
+            // Inbound transfer request: party objects and an amount object
+            case "MOMO" -> """
+                    {"payer":{"partyIdInfo":{"partyIdType":"MSISDN","partyIdentifier":"250788123456"}},
+                    "payee":{"partyIdInfo":{"partyIdType":"ACCOUNTID","partyIdentifier":"40871165"}},
+                    "amount":{"amount":"12000","currency":"RWF"},
+                    "transactionType":{"scenario":"PAYMENT","initiator":"PAYER","initiatorType":"CONSUMER"},
+                    "externalId":"6781234501","note":"Loan repayment"}""";
+            // TNM: flat amount and currency, and the workflow ID used as the transaction ID
+            case "TNM" -> """
+                    {"payer":{"partyIdInfo":{"partyIdType":"MSISDN","partyIdentifier":"265881234567"}},
+                    "payee":{"partyIdInfo":{"partyIdType":"ACCOUNTID","partyIdentifier":"52630098"}},
+                    "amount":"35000","currency":"MWK","useWorkflowIdAsTransactionId":true,
+                    "workflowId":"2251799813712345","externalId":"CI230524.1623.A00045"}""";
+            default -> throw new IllegalArgumentException("Unknown provider " + provider);
+        };
+    }
+
+    /**
+     * Returns a custom data array as set on the transaction.
+     *
+     * @param size
+     *            SMALL for the entries used by the flows only, LARGE to add filler entries before them
+     * @return the custom data JSON
+     */
+    public static String customData(String size) {
+        StringBuilder customData = new StringBuilder("[");
+        if ("LARGE".equalsIgnoreCase(size)) {
+            for (int i = 0; i < LARGE_CUSTOM_DATA_FILLER_ENTRIES; i++) {
+                customData.append("{\"key\":\"field").append(i).append("\",\"value\":\"value").append(i)
+                        .append("\"},");
+            }
+        }
+        customData.append("""
+                {"key":"transactionId","value":"9f2b6a4e-6c1d-4b0a-8f55-3c2d1e0a7b91"},\
+                {"key":"currency","value":"KES"},{"key":"amount","value":"1500"},\
+                {"key":"loanId","value":"182733"},{"key":"getAccountDetails","value":"true"}]""");
+        return customData.toString();
+    }
+
+    /**
+     * Returns the paybill validation payload sent by the given provider's paybill connector.
+     *
+     * @param provider
+     *            one of MPESA, AIRTEL, MOMO or TNM
+     * @param customDataSize
+     *            SMALL or LARGE, see {@link #customData(String)}
+     * @return the paybill payload JSON
+     */
+    public static String payBillRequest(String provider, String customDataSize) {
+        String msisdn = switch (provider.toUpperCase(Locale.ROOT)) {
+            case "MPESA" -> "254708374149";
+            case "AIRTEL" -> "256752345678";
+            case "MOMO" -> "250788123456";
+            case "TNM" -> "265881234567";
+            default -> throw new IllegalArgumentException("Unknown provider " + provider);
+        };
+        return "{\"primaryIdentifier\":{\"key\":\"accountId\",\"value\":\"24450523\"},"
+                + "\"secondaryIdentifier\":{\"key\":\"MSISDN\",\"value\":\"" + msisdn + "\"},"
+                + "\"customData\":" + customData(customDataSize) + "}";
+    }
+
+    /**
+     * Returns an error body returned by Fineract.
+     *
+     * @param kind
+     *            FINERACT for a Fineract platform error, GATEWAY for an API gateway error, or HTML for a non JSON body
+     * @return the error body
+     */
+    public static String errorPayload(String kind) {
+        return switch (kind.toUpperCase(Locale.ROOT)) {
+            case "FINERACT" -> """
+                    {"developerMessage":"The request was invalid. This typically will happen due to validation \
+                    errors which are provided.","httpStatusCode":"400",\
+                    "defaultUserMessage":"Validation errors exist.",\
+                    "userMessageGlobalisationCode":"validation.msg.validation.errors.exist",\
+                    "errors":[{"developerMessage":"Loan with identifier 182733 does not exist",\
+                    "defaultUserMessage":"Loan with identifier 182733 does not exist",\
+                    "parameterName":"id","value":null,"args":[{"value":182733}]}],\
+                    "errorDescription":"Loan with identifier 182733 does not exist"}""";
+            case "GATEWAY" -> """
+                    {"Message":"An error has occurred.","ExceptionType":"System.TimeoutException"}""";
+            case "HTML" -> "<html><body><h1>502 Bad Gateway</h1></body></html>";
+            default -> throw new IllegalArgumentException("Unknown error payload " + kind);
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.mifos.connector.ams.fineract.data.FineractGetValidationResponse;
+import org.mifos.connector.ams.fineract.util.FineractJsonCodec;
+import org.mifos.connector.common.gsma.dto.CustomData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the custom data lookups done for each transaction, and the custom data built from the client details
+ * returned by Fineract.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CustomDataBenchmark {
+
+    /**
+     * The keys looked up by the validation flow, in the order they are looked up.
+     */
+    private static final String[] LOOKED_UP_KEYS = { "transactionId", "currency", "amount", "loanId",
+            "getAccountDetails" };
+
+    @Param({ "SMALL", "LARGE" })
+    private String customDataSize;
+
+    private String customDataJson;
+    private JSONArray customDataArray;
+    private FineractGetValidationResponse clientDetails;
+
+    /**
+     * Builds the payloads for the current parameters.
+     */
+    @Setup
+    public void setup() {
+        customDataJson = BenchmarkPayloads.customData(customDataSize);
+        customDataArray = new JSONArray(customDataJson);
+        clientDetails = new FineractGetValidationResponse("9f2b6a4e-6c1d-4b0a-8f55-3c2d1e0a7b91",
+                new BigDecimal("1500"), "24450523", "254708374149", "MPESA", "Jane", "Wanjiru", "000024450523",
+                "254708374149");
+    }
+
+    /**
+     * Lookups on an already parsed array, as done by {@link LegacyRequestMapping#convertCustomData}.
+     *
+     * @param blackhole
+     *            consumes the looked up values
+     */
+    @Benchmark
+    public void convertCustomData(Blackhole blackhole) {
+        for (String key : LOOKED_UP_KEYS) {
+            blackhole.consume(LegacyRequestMapping.convertCustomData(customDataArray, key));
+        }
+    }
+
+    /**
+     * Parsing with org.json followed by the lookups.
+     *
+     * @param blackhole
+     *            consumes the looked up values
+     */
+    @Benchmark
+    public void parseAndConvertCustomDataLegacy(Blackhole blackhole) {
+        JSONArray customData = new JSONArray(customDataJson);
+        for (String key : LOOKED_UP_KEYS) {
+            blackhole.consume(LegacyRequestMapping.convertCustomData(customData, key));
+        }
+    }
+
+    /**
+     * Parsing with the JSON codec followed by the lookups.
+     *
+     * @param blackhole
+     *            consumes the looked up values
+     */
+    @Benchmark
+    public void parseAndConvertCustomDataCodec(Blackhole blackhole) {
+        Map<String, String> customData = FineractJsonCodec.readCustomData(customDataJson);
+        for (String key : LOOKED_UP_KEYS) {
+            blackhole.consume(customData.get(key.toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Custom data returned with the validation response when account details are requested.
+     *
+     * @return the custom data
+     */
+    @Benchmark
+    public List<CustomData> convertToCustomData() {
+        return FineractGetValidationResponse.convertToCustomData(clientDetails);
+    }
+}
@@ -0,0 +1,45 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.mifos.connector.ams.fineract.util.ConnectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the parsing of the error description from the bodies of failed Fineract calls.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorDescriptionBenchmark {
+
+    @Param({ "FINERACT", "GATEWAY", "HTML" })
+    private String errorKind;
+
+    private String errorPayload;
+
+    /**
+     * Builds the payload for the current parameters.
+     */
+    @Setup
+    public void setup() {
+        errorPayload = BenchmarkPayloads.errorPayload(errorKind);
+    }
+
+    /**
+     * Parses the error description as done when a Fineract call fails.
+     *
+     * @return the error description
+     */
+    @Benchmark
+    public String parseErrorDescription() {
+        return ConnectionUtils.parseErrorDescriptionFromJsonPayload(errorPayload);
+    }
+}
@@ -0,0 +1,178 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.AMOUNT_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CURRENCY_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CUSTOM_DATA;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
+import org.mifos.connector.ams.fineract.data.FineractRequestDto;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * The org.json mapping of the Zeebe variables and paybill payloads to the Fineract requests, as done before the JSON
+ * codec. Only kept as the baseline the codec benchmarks are compared with.
+ *
+ */
+public final class LegacyRequestMapping {
+
+    private LegacyRequestMapping() {}
+
+    /**
+     * Creates a {@link FineractRequestDto} using data in the channel request.
+     *
+     * @param channelRequest
+     *            contains data related to the transaction
+     * @param transactionId
+     *            the transaction identifier
+     * @param customData
+     *            holds custom data such as loanId
+     * @return {@link FineractRequestDto}
+     */
+    public static FineractRequestDto fromChannelRequest(JSONObject channelRequest, String transactionId,
+            JSONArray customData) {
+        FineractRequestDto dto = new FineractRequestDto();
+
+        String phoneNumber = getPartyIdIdentifier(channelRequest, "payer");
+        String accountId = getPartyIdIdentifier(channelRequest, "payee");
+        Object amountObj = channelRequest.get(AMOUNT_VARIABLE_NAME);
+
+        if (amountObj != null) {
+            if (amountObj instanceof String amount) {
+
+                dto.setAmount(new BigDecimal(amount));
+                dto.setCurrency(String.valueOf(channelRequest.get(CURRENCY_VARIABLE_NAME)));
+            } else {
+                JSONObject amountJson = (JSONObject) amountObj;
+                dto.setAmount(new BigDecimal(amountJson.getString(AMOUNT_VARIABLE_NAME)));
+                dto.setCurrency(amountJson.getString(CURRENCY_VARIABLE_NAME));
+            }
+        }
+
+        dto.setPhoneNumber(phoneNumber);
+        dto.setAccount(accountId);
+        dto.setRemoteTransactionId(transactionId);
+        setLoanIdFromCustomData(dto, customData);
+        setGetAccountDetailsFromCustomData(dto, customData);
+
+        return dto;
+    }
+
+    /**
+     * Creates a {@link FineractConfirmationRequestDto} using data in the channel request.
+     *
+     * @param channelRequest
+     *            contains data related to the transaction
+     * @param transactionId
+     *            the transaction identifier
+     * @return {@link FineractConfirmationRequestDto}
+     */
+    public static FineractConfirmationRequestDto confirmationFromChannelRequest(JSONObject channelRequest,
+            String transactionId) {
+        FineractConfirmationRequestDto dto = new FineractConfirmationRequestDto();
+
+        BeanUtils.copyProperties(fromChannelRequest(channelRequest, transactionId, null), dto);
+
+        return dto;
+    }
+
+    /**
+     * Convert the paybill payload to AMS payload.
+     *
+     * @param payload
+     *            the JSON payload
+     * @return {@link FineractRequestDto}
+     */
+    public static FineractRequestDto convertPayBillPayloadToAmsPayload(JSONObject payload) {
+
+        JSONArray customData = payload.getJSONArray(CUSTOM_DATA);
+        String transactionId = convertCustomData(customData, "transactionId");
+        String currency = convertCustomData(customData, CURRENCY_VARIABLE_NAME);
+        String walletMsisdn = payload.getJSONObject("secondaryIdentifier").getString("value");
+        String accountId = payload.getJSONObject("primaryIdentifier").getString("value");
+        String amount = convertCustomData(customData, AMOUNT_VARIABLE_NAME);
+        BigDecimal amountVal = Objects.nonNull(amount) ? new BigDecimal(amount.trim()) : BigDecimal.ZERO;
+        FineractRequestDto validationRequestDto = new FineractRequestDto();
+        validationRequestDto.setAccount(accountId);
+        validationRequestDto.setAmount(amountVal);
+        validationRequestDto.setCurrency(currency);
+        validationRequestDto.setRemoteTransactionId(transactionId);
+        validationRequestDto.setPhoneNumber(walletMsisdn);
+        setLoanIdFromCustomData(validationRequestDto, customData);
+        setGetAccountDetailsFromCustomData(validationRequestDto, customData);
+        return validationRequestDto;
+    }
+
+    /**
+     * Convert the paybill payload to AMS confirmation payload.
+     *
+     * @param payload
+     *            the JSON payload
+     * @return {@link FineractConfirmationRequestDto}
+     */
+    public static FineractConfirmationRequestDto convertPayBillPayloadToAmsConfirmationPayload(JSONObject payload) {
+        FineractConfirmationRequestDto dto = new FineractConfirmationRequestDto();
+
+        BeanUtils.copyProperties(convertPayBillPayloadToAmsPayload(payload), dto);
+
+        return dto;
+    }
+
+    /**
+     * Convert custom data.
+     *
+     * @param customData
+     *            {@link JSONArray}
+     * @param key
+     *            the custom data key
+     * @return the custom data value
+     */
+    public static String convertCustomData(JSONArray customData, String key) {
+        for (Object obj : customData) {
+            JSONObject item = (JSONObject) obj;
+            try {
+                String filter = item.getString("key");
+                if (filter != null && filter.equalsIgnoreCase(key)) {
+                    Object val = item.get("value");
+                    return val != null ? val.toString() : null;
+                }
+            } catch (Exception e) {
+                // Entries without a key are skipped
+            }
+        }
+        return null;
+    }
+
+    private static void setLoanIdFromCustomData(FineractRequestDto dto, JSONArray customData) {
+        if (customData != null) {
+            String loanId = convertCustomData(customData, "loanId");
+            if (loanId != null && !loanId.isBlank()) {
+                dto.setLoanId(Long.valueOf(loanId));
+            }
+        }
+    }
+
+    private static void setGetAccountDetailsFromCustomData(FineractRequestDto dto, JSONArray customData) {
+        if (customData != null) {
+            String getAccountDetailsCustomData = convertCustomData(customData, "getAccountDetails");
+            if (StringUtils.hasText(getAccountDetailsCustomData)
+                    && List.of("true", "false").contains(getAccountDetailsCustomData)) {
+                dto.setGetAccountDetails(Boolean.parseBoolean(getAccountDetailsCustomData));
+            }
+        }
+    }
+
+    private static String getPartyIdIdentifier(JSONObject party, String partyType) {
+        Object type = party.get(partyType);
+        if (type instanceof JSONArray jsonArray) {
+            return jsonArray.getJSONObject(0).getString("partyIdIdentifier");
+        } else {
+            return ((JSONObject) type).getJSONObject("partyIdInfo").getString("partyIdentifier");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.mifos.connector.ams.fineract.data.ChannelRequest;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
+import org.mifos.connector.ams.fineract.data.FineractRequestDto;
+import org.mifos.connector.ams.fineract.data.PayBillRequest;
+import org.mifos.connector.ams.fineract.util.FineractJsonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of turning the Zeebe variables and paybill payloads of a transaction into the Fineract validation
+ * and confirmation requests, including the parsing of the raw JSON. The legacy benchmarks go through the org.json and
+ * {@link org.springframework.beans.BeanUtils} mapping of {@link LegacyRequestMapping}, the codec benchmarks through
+ * {@link FineractJsonCodec}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestMappingBenchmark {
+
+    private static final String TRANSACTION_ID = "9f2b6a4e-6c1d-4b0a-8f55-3c2d1e0a7b91";
+
+    @Param({ "MPESA", "AIRTEL", "MOMO", "TNM" })
+    private String provider;
+
+    @Param({ "SMALL", "LARGE" })
+    private String customDataSize;
+
+    private String channelRequest;
+    private String customData;
+    private String payBillRequest;
+
+    /**
+     * Builds the payloads for the current parameters.
+     */
+    @Setup
+    public void setup() {
+        channelRequest = BenchmarkPayloads.channelRequest(provider);
+        customData = BenchmarkPayloads.customData(customDataSize);
+        payBillRequest = BenchmarkPayloads.payBillRequest(provider, customDataSize);
+    }
+
+    /**
+     * Validation request from the channel request, using org.json.
+     *
+     * @return {@link FineractRequestDto}
+     */
+    @Benchmark
+    public FineractRequestDto validationFromChannelRequestLegacy() {
+        return LegacyRequestMapping.fromChannelRequest(new JSONObject(channelRequest), TRANSACTION_ID,
+                new JSONArray(customData));
+    }
+
+    /**
+     * Validation request from the channel request, using the JSON codec.
+     *
+     * @return {@link FineractRequestDto}
+     */
+    @Benchmark
+    public FineractRequestDto validationFromChannelRequestCodec() {
+        ChannelRequest request = FineractJsonCodec.readChannelRequest(channelRequest);
+        Map<String, String> customDataValues = FineractJsonCodec.readCustomData(customData);
+        return FineractRequestDto.fromChannelRequest(request, TRANSACTION_ID, customDataValues);
+    }
+
+    /**
+     * Confirmation request from the channel request, using org.json and BeanUtils.
+     *
+     * @return {@link FineractConfirmationRequestDto}
+     */
+    @Benchmark
+    public FineractConfirmationRequestDto confirmationFromChannelRequestLegacy() {
+        return LegacyRequestMapping.confirmationFromChannelRequest(new JSONObject(channelRequest), TRANSACTION_ID);
+    }
+
+    /**
+     * Confirmation request from the channel request, using the JSON codec.
+     *
+     * @return {@link FineractConfirmationRequestDto}
+     */
+    @Benchmark
+    public FineractConfirmationRequestDto confirmationFromChannelRequestCodec() {
+        return FineractConfirmationRequestDto.fromChannelRequest(FineractJsonCodec.readChannelRequest(channelRequest),
+                TRANSACTION_ID);
+    }
+
+    /**
+     * Validation request from the paybill payload, using org.json.
+     *
+     * @return {@link FineractRequestDto}
+     */
+    @Benchmark
+    public FineractRequestDto validationFromPayBillLegacy() {
+        return LegacyRequestMapping.convertPayBillPayloadToAmsPayload(new JSONObject(payBillRequest));
+    }
+
+    /**
+     * Validation request from the paybill payload, using the JSON codec.
+     *
+     * @return {@link FineractRequestDto}
+     */
+    @Benchmark
+    public FineractRequestDto validationFromPayBillCodec() {
+        PayBillRequest request = FineractJsonCodec.readPayBillRequest(payBillRequest);
+        return FineractRequestDto.fromPayBillRequest(request);
+    }
+
+    /**
+     * Confirmation request from the paybill payload, using org.json.
+     *
+     * @return {@link FineractConfirmationRequestDto}
+     */
+    @Benchmark
+    public FineractConfirmationRequestDto confirmationFromPayBillLegacy() {
+        return LegacyRequestMapping.convertPayBillPayloadToAmsConfirmationPayload(new JSONObject(payBillRequest));
+    }
+
+    /**
+     * Confirmation request from the paybill payload, using the JSON codec.
+     *
+     * @return {@link FineractConfirmationRequestDto}
+     */
+    @Benchmark
+    public FineractConfirmationRequestDto confirmationFromPayBillCodec() {
+        return FineractConfirmationRequestDto.fromPayBillRequest(FineractJsonCodec.readPayBillRequest(payBillRequest));
+    }
+
+    /**
+     * Serialization of the validation request sent to Fineract.
+     *
+     * @return the request body
+     */
+    @Benchmark
+    public byte[] writeValidationRequest() {
+        return FineractJsonCodec.writeRequest(validationFromChannelRequestCodec());
+    }
+}
@@ -0,0 +1,170 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
+
+import ch.qos.logback.classic.Level;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.support.DefaultComponent;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.support.ProcessorEndpoint;
+import org.mifos.connector.ams.fineract.camel.route.FineractPayBillRouteBuilder;
+import org.mifos.connector.ams.fineract.camel.route.FineractRouteBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+
+/**
+ * Measures the routing overhead of the Fineract calls through the {@link FineractRouteBuilder} routes, outside of the
+ * HTTP call itself. The routes are started in a Spring context holding the beans they use, configured by the
+ * application properties, with the Fineract base url pointing at an in-process stub answering as Fineract does. A
+ * validation goes through the transfer validation routes, including the client details lookup, and a settlement through
+ * the transfer settlement routes.
+ *
+ * <p>
+ * The benchmark only depends on the route ids and on the bean packages, so that the routes of an earlier commit can be
+ * measured by running the same benchmark on it, e.g. with {@code git worktree add}, for a before and after comparison
+ * of a change to the routes.
+ *
+ * <p>
+ * The logs are enabled at INFO without any appender, so that the log messages are built but not written.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoutePipelineBenchmark {
+
+    private static final String FINERACT_STUB = "fineract-stub";
+    private static final String TRANSACTION = "9f2b6a4e-6c1d-4b0a-8f55-3c2d1e0a7b91";
+
+    private ConfigurableApplicationContext applicationContext;
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private String payBillRequest;
+
+    /**
+     * Starts the Fineract routes.
+     */
+    @Setup
+    public void setup() {
+        // Keeps Spring Boot from configuring logback, the logs staying at INFO without any appender
+        System.setProperty("org.springframework.boot.logging.LoggingSystem", "none");
+        ch.qos.logback.classic.Logger root = (ch.qos.logback.classic.Logger) LoggerFactory
+                .getLogger(Logger.ROOT_LOGGER_NAME);
+        root.detachAndStopAllAppenders();
+        root.setLevel(Level.INFO);
+
+        // Command line arguments, as default properties would be overridden by the application properties
+        applicationContext = new SpringApplicationBuilder(RouteBenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE).bannerMode(Banner.Mode.OFF).logStartupInfo(false)
+                .run("--fineract.base-url=" + FINERACT_STUB + "://fineract", "--ams.outbox.enabled=false");
+        camelContext = applicationContext.getBean(CamelContext.class);
+        producerTemplate = camelContext.createProducerTemplate();
+        payBillRequest = BenchmarkPayloads.payBillRequest("MPESA", "SMALL");
+    }
+
+    /**
+     * Stops the Fineract routes.
+     */
+    @TearDown
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    /**
+     * A paybill validation, followed by the client details lookup.
+     *
+     * @return the exchange
+     */
+    @Benchmark
+    public Exchange validation() {
+        return producerTemplate.send("direct:transfer-validation-base", newExchange());
+    }
+
+    /**
+     * A paybill settlement.
+     *
+     * @return the exchange
+     */
+    @Benchmark
+    public Exchange settlement() {
+        return producerTemplate.send("direct:transfer-settlement-base", newExchange());
+    }
+
+    private Exchange newExchange() {
+        Exchange exchange = new DefaultExchange(camelContext);
+        exchange.setProperty(TRANSACTION_ID, TRANSACTION);
+        exchange.getIn().setBody(payBillRequest);
+        return exchange;
+    }
+
+    /**
+     * Beans of the Fineract routes, without the Zeebe workers, the paybill routes and the web server.
+     */
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @ComponentScan(basePackages = { "org.mifos.connector.ams.fineract.camel",
+            "org.mifos.connector.ams.fineract.metrics", "org.mifos.connector.ams.fineract.outbox",
+            "org.mifos.connector.ams.fineract.tenant",
+            "org.mifos.connector.ams.fineract.util" }, excludeFilters = @ComponentScan.Filter(
+                    type = FilterType.ASSIGNABLE_TYPE, classes = FineractPayBillRouteBuilder.class))
+    static class RouteBenchmarkConfiguration {
+
+        @Bean(FINERACT_STUB)
+        FineractStubComponent fineractStub() {
+            return new FineractStubComponent();
+        }
+    }
+
+    /**
+     * Component of the Fineract stub, answering each call with a 200 status and a response body streamed as by the
+     * Camel HTTP producer.
+     */
+    static class FineractStubComponent extends DefaultComponent {
+
+        private static final String CLIENT_DETAILS_RESPONSE = """
+                [{"transactionId":"9f2b6a4e-6c1d-4b0a-8f55-3c2d1e0a7b91","amount":1500,\
+                "accountNumber":"24450523","phoneNumber":"254708374149","provider":"MPESA",\
+                "clientFirstname":"Jane","clientLastname":"Wanjiru","clientAccountNumber":"24450523",\
+                "clientMobileNo":"254708374149"}]""";
+        private static final String RESPONSE = "{\"reconciled\":true}";
+
+        @Override
+        protected Endpoint createEndpoint(String uri, String remaining, Map<String, Object> parameters) {
+            // The options of the Fineract HTTP endpoints are not used by the stub
+            parameters.clear();
+            byte[] body = (remaining.contains("/payments/validations") ? CLIENT_DETAILS_RESPONSE : RESPONSE)
+                    .getBytes(StandardCharsets.UTF_8);
+            return new ProcessorEndpoint(uri, this, exchange -> {
+                Message message = exchange.getMessage();
+                message.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                message.setHeader("Date", "Tue, 24 Oct 2023 10:15:30 GMT");
+                message.setBody(new ByteArrayInputStream(body));
+            });
+        }
+    }
+}
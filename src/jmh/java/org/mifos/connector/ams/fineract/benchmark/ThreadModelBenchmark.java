@@ -0,0 +1,140 @@
+package org.mifos.connector.ams.fineract.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.http.HttpComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.mifos.connector.ams.fineract.camel.config.VirtualThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares platform and virtual threads for the blocking Fineract calls. Each operation makes a round of concurrent
+ * calls through a Camel HTTP route to a local Fineract stub answering after a fixed latency, on a Camel pool created by
+ * the default thread pool factory or by the {@link VirtualThreadPoolFactory}, as the virtual-threads-enabled flag does.
+ * The pool size bounds the calls in flight in both modes.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ThreadModelBenchmark {
+
+    private static final byte[] STUB_RESPONSE = "{\"reconciled\":true,\"status\":\"ACTIVE\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    private String threads;
+
+    // Pool size, and connections of the HTTP component
+    @Param({ "50", "200" })
+    private int poolSize;
+
+    // Concurrent calls of a round
+    @Param({ "400" })
+    private int calls;
+
+    // Latency of the Fineract stub, in milliseconds
+    @Param({ "20" })
+    private int latencyMillis;
+
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private ExecutorService executor;
+
+    /**
+     * Starts the Fineract stub and a Camel context calling it.
+     *
+     * @throws Exception
+     *             if the stub or the context fails to start
+     */
+    @Setup
+    public void setup() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), calls);
+        stubExecutor = Executors.newCachedThreadPool();
+        stub.setExecutor(stubExecutor);
+        stub.createContext("/fineract-provider/api/v1/interoperation/transactions", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(latencyMillis);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, STUB_RESPONSE.length);
+                exchange.getResponseBody().write(STUB_RESPONSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stub.start();
+
+        camelContext = new DefaultCamelContext();
+        camelContext.setMessageHistory(false);
+        camelContext.setStreamCaching(false);
+        if ("VIRTUAL".equals(threads)) {
+            camelContext.getExecutorServiceManager().setThreadPoolFactory(new VirtualThreadPoolFactory());
+        }
+        HttpComponent http = camelContext.getComponent("http", HttpComponent.class);
+        http.setMaxTotalConnections(poolSize);
+        http.setConnectionsPerRoute(poolSize);
+        String stubUri = "http://localhost:" + stub.getAddress().getPort()
+                + "/fineract-provider/api/v1/interoperation/transactions?throwExceptionOnFailure=false";
+        camelContext.addRoutes(new RouteBuilder() {
+
+            @Override
+            public void configure() {
+                from("direct:fineract").process(exchange -> {
+                    exchange.getIn().setHeader(Exchange.HTTP_METHOD, "POST");
+                    exchange.getIn().setHeader(Exchange.CONTENT_TYPE, "application/json");
+                }).to(stubUri).convertBodyTo(String.class);
+            }
+        });
+        camelContext.start();
+        producerTemplate = camelContext.createProducerTemplate();
+        executor = camelContext.getExecutorServiceManager().newFixedThreadPool(this, "FineractCalls", poolSize);
+    }
+
+    /**
+     * Stops the Camel context and the stub.
+     */
+    @TearDown
+    public void tearDown() {
+        camelContext.getExecutorServiceManager().shutdownNow(executor);
+        camelContext.stop();
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    /**
+     * A round of concurrent Fineract calls.
+     *
+     * @return the response body of the last call
+     */
+    @Benchmark
+    public Object concurrentCalls() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[calls];
+        for (int i = 0; i < calls; i++) {
+            futures[i] = CompletableFuture.supplyAsync(
+                    () -> producerTemplate.requestBody("direct:fineract", "{\"transactionCode\":\"CREDIT\"}"),
+                    executor);
+        }
+        CompletableFuture.allOf(futures).join();
+        return futures[calls - 1].join();
+    }
+}
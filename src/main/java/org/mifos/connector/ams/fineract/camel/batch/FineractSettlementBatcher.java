@@ -0,0 +1,221 @@
+package org.mifos.connector.ams.fineract.camel.batch;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationBatchItemResponse;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesces concurrent Fineract confirmations of the same tenant into bulk requests.
+ *
+ * <p>
+ * Each exchange submits its {@link FineractConfirmationRequestDto} and waits for its own result. A batch is sent once
+ * it reaches the max size or once the oldest confirmation has waited for the max wait time, whichever comes first. The
+ * per-item result is then set on the exchange as if the confirmation had been sent on its own, so the settlement route
+ * handles it the same way.
+ *
+ * <p>
+ * The batches flushed by the max wait time are sent from a bounded Camel managed pool, the batches filled up being sent
+ * on the exchange thread that filled them.
+ */
+@Slf4j
+@Component
+public class FineractSettlementBatcher implements Processor {
+
+    private static final String MISSING_RESULT_BODY = "{\"Message\":\"No result returned in batch confirmation\"}";
+
+    private final CamelContext camelContext;
+    private final ProducerTemplate producerTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${fineract.batch.settlement.max-size}")
+    private int maxBatchSize;
+
+    @Value("${fineract.batch.settlement.max-wait}")
+    private long maxWaitMs;
+
+    // Batches flushed by the max wait time sent at once, the others waiting in the pool queue
+    @Value("${fineract.batch.settlement.sender-pool-size}")
+    private int senderPoolSize;
+
+    private final Map<String, TenantBatch> batches = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService sender;
+
+    public FineractSettlementBatcher(CamelContext camelContext, ProducerTemplate producerTemplate,
+            ObjectMapper objectMapper) {
+        this.camelContext = camelContext;
+        this.producerTemplate = producerTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                "SettlementBatchTimer");
+        sender = camelContext.getExecutorServiceManager().newFixedThreadPool(this, "SettlementBatchSender",
+                senderPoolSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        for (TenantBatch tenantBatch : batches.values()) {
+            List<PendingConfirmation> batch;
+            synchronized (tenantBatch) {
+                batch = tenantBatch.drain();
+            }
+            if (!batch.isEmpty()) {
+                send(tenantBatch.tenant, batch);
+            }
+        }
+        camelContext.getExecutorServiceManager().shutdown(scheduler);
+        camelContext.getExecutorServiceManager().shutdownGraceful(sender);
+    }
+
+    @Override
+    public void process(Exchange exchange) {
+        FineractConfirmationRequestDto confirmationRequestDto = exchange.getIn()
+                .getBody(FineractConfirmationRequestDto.class);
+        FineractConfirmationBatchItemResponse result = submit(exchange.getProperty(FINERACT_TENANT, String.class),
+                confirmationRequestDto).join();
+
+        exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, result.getStatusCode());
+        exchange.getIn().setBody(result.getBody() != null ? result.getBody().toString() : null);
+    }
+
+    /**
+     * Adds the confirmation to the current batch of its tenant, sending the batch if it is full.
+     *
+     * @param tenant
+     *            the tenant id
+     * @param confirmationRequestDto
+     *            {@link FineractConfirmationRequestDto}
+     * @return the future completed with the confirmation result once the batch has been sent
+     */
+    public CompletableFuture<FineractConfirmationBatchItemResponse> submit(String tenant,
+            FineractConfirmationRequestDto confirmationRequestDto) {
+        PendingConfirmation confirmation = new PendingConfirmation(confirmationRequestDto, new CompletableFuture<>());
+        TenantBatch tenantBatch = batches.computeIfAbsent(tenant, TenantBatch::new);
+        List<PendingConfirmation> batch = null;
+        synchronized (tenantBatch) {
+            tenantBatch.pending.add(confirmation);
+            if (tenantBatch.pending.size() >= maxBatchSize) {
+                batch = tenantBatch.drain();
+            } else if (tenantBatch.pending.size() == 1) {
+                tenantBatch.scheduledFlush = scheduler.schedule(() -> flush(tenantBatch), maxWaitMs,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            send(tenant, batch);
+        }
+        return confirmation.result();
+    }
+
+    private void flush(TenantBatch tenantBatch) {
+        List<PendingConfirmation> batch;
+        synchronized (tenantBatch) {
+            batch = tenantBatch.drain();
+        }
+        if (!batch.isEmpty()) {
+            sender.execute(() -> send(tenantBatch.tenant, batch));
+        }
+    }
+
+    /**
+     * Sends the batch to Fineract and completes each confirmation with its own result.
+     *
+     * @param tenant
+     *            the tenant id of the confirmations
+     * @param batch
+     *            the confirmations to be sent
+     */
+    private void send(String tenant, List<PendingConfirmation> batch) {
+        log.info("Sending Fineract batch confirmation of {} items for tenant {}", batch.size(), tenant);
+        List<FineractConfirmationRequestDto> requests = batch.stream().map(PendingConfirmation::request).toList();
+        try {
+            Exchange response = producerTemplate.send("direct:transfer-settlement-batch", exchange -> {
+                exchange.setProperty(FINERACT_TENANT, tenant);
+                exchange.getIn().setBody(requests);
+            });
+            if (response.getException() != null) {
+                throw response.getException();
+            }
+
+            Integer statusCode = response.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+            String body = response.getIn().getBody(String.class);
+            if (statusCode == null || statusCode != 200) {
+                // The whole batch failed, each confirmation gets the batch response
+                FineractConfirmationBatchItemResponse batchResult = new FineractConfirmationBatchItemResponse(null,
+                        statusCode, body != null ? objectMapper.readTree(body) : null);
+                batch.forEach(confirmation -> confirmation.result().complete(batchResult));
+                return;
+            }
+
+            Map<String, FineractConfirmationBatchItemResponse> results = new HashMap<>();
+            for (FineractConfirmationBatchItemResponse item : objectMapper.readValue(body,
+                    FineractConfirmationBatchItemResponse[].class)) {
+                results.put(item.getRemoteTransactionId(), item);
+            }
+            for (PendingConfirmation confirmation : batch) {
+                String transactionId = confirmation.request().getRemoteTransactionId();
+                FineractConfirmationBatchItemResponse result = results.get(transactionId);
+                if (result == null) {
+                    log.error("No result returned in batch confirmation for transaction {}", transactionId);
+                    result = new FineractConfirmationBatchItemResponse(transactionId, 500,
+                            objectMapper.readTree(MISSING_RESULT_BODY));
+                }
+                confirmation.result().complete(result);
+            }
+        } catch (Exception e) {
+            log.error("Fineract batch confirmation failed: {}", e.getMessage());
+            batch.forEach(confirmation -> confirmation.result().completeExceptionally(e));
+        }
+    }
+
+    /** The confirmations of a tenant waiting to be sent. */
+    private static final class TenantBatch {
+
+        private final String tenant;
+        private final List<PendingConfirmation> pending = new ArrayList<>();
+        private ScheduledFuture<?> scheduledFlush;
+
+        private TenantBatch(String tenant) {
+            this.tenant = tenant;
+        }
+
+        private List<PendingConfirmation> drain() {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            List<PendingConfirmation> batch = new ArrayList<>(pending);
+            pending.clear();
+            return batch;
+        }
+    }
+
+    private record PendingConfirmation(FineractConfirmationRequestDto request,
+            CompletableFuture<FineractConfirmationBatchItemResponse> result) {
+    }
+}
@@ -0,0 +1,364 @@
+package org.mifos.connector.ams.fineract.camel.cache;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.ACCOUNT_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.apache.camel.util.concurrent.ThreadPoolRejectedPolicy;
+import org.mifos.connector.ams.fineract.data.FineractGetValidationResponse;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Looks up client details through the get-client-details route, caching the results by tenant, transaction and account.
+ *
+ * <p>
+ * Successful lookups are kept for the configured TTL while lookups answered with a 404 are kept for the shorter
+ * negative TTL. Any other answer is passed through without being cached. The looked up
+ * {@link FineractGetValidationResponse} array, or null when there is none, is set as the exchange body.
+ *
+ * <p>
+ * A lookup can also be started ahead with {@link #prefetch(Exchange)}, to run alongside the Fineract validation call.
+ * Processing the exchange then waits for the prefetched lookup instead of starting a new one.
+ *
+ * <p>
+ * When hedging is enabled, a call to Fineract still unanswered after the observed p95 latency of the calls is hedged by
+ * a second call, the first answer being used. The hedges are bounded by a budget earned by the lookups, so that they
+ * stay under the max ratio of the lookups even when Fineract slows down as a whole. The call that loses is cancelled.
+ *
+ * <p>
+ * The prefetches and the calls run on two pools bounded by the client details bulkhead, the calls pool leaving room for
+ * a hedge of each call. A saturated pool rejects the task rather than queuing it: the call is then made on the calling
+ * thread, without a hedge, and the prefetch is left to the processing of the exchange. With virtual threads the task
+ * waits for a running one to end instead. The prefetches wait for the calls but never the other way round, so that a
+ * full pool can't wait on itself.
+ */
+@Slf4j
+@Component
+public class FineractClientDetailsCache implements Processor {
+
+    private static final String PREFETCHED_LOOKUP_PROPERTY = "fineractClientDetailsLookup";
+    private static final String CLIENT_DETAILS_ROUTE = "direct:get-client-details";
+    // Hedges that can be made in a row once the budget is full
+    private static final double MAX_HEDGE_CREDITS = 10;
+
+    private final CamelContext camelContext;
+    private final ProducerTemplate producerTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ConnectorMetrics connectorMetrics;
+
+    @Value("${fineract.cache.client-details.enabled}")
+    private boolean isCacheEnabled;
+
+    @Value("${fineract.cache.client-details.ttl}")
+    private long ttlMs;
+
+    @Value("${fineract.cache.client-details.negative-ttl}")
+    private long negativeTtlMs;
+
+    @Value("${fineract.cache.client-details.max-size}")
+    private long maxSize;
+
+    @Value("${fineract.hedging.client-details.enabled}")
+    private boolean isHedgingEnabled;
+
+    // Lowest delay in milliseconds before a call is hedged, used until enough calls were made to know their p95
+    @Value("${fineract.hedging.client-details.min-delay}")
+    private long hedgeMinDelayMs;
+
+    // Max share of the lookups that can be hedged
+    @Value("${fineract.hedging.client-details.max-ratio}")
+    private double hedgeMaxRatio;
+
+    @Value("${fineract.bulkhead.client-details.max-concurrent-calls}")
+    private int maxConcurrentCalls;
+
+    private Cache<String, CachedClientDetails> cache;
+    private ExecutorService prefetchExecutor;
+    private ExecutorService callExecutor;
+    private Timer callLatency;
+    private double hedgeCredits;
+
+    public FineractClientDetailsCache(CamelContext camelContext, ProducerTemplate producerTemplate,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry, ConnectorMetrics connectorMetrics) {
+        this.camelContext = camelContext;
+        this.producerTemplate = producerTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.connectorMetrics = connectorMetrics;
+    }
+
+    @PostConstruct
+    void setupCache() {
+        cache = Caffeine.newBuilder().maximumSize(maxSize).expireAfter(new Expiry<String, CachedClientDetails>() {
+
+            @Override
+            public long expireAfterCreate(String key, CachedClientDetails value, long currentTime) {
+                return TimeUnit.MILLISECONDS.toNanos(value.response() != null ? ttlMs : negativeTtlMs);
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, CachedClientDetails value, long currentTime,
+                    long currentDuration) {
+                return expireAfterCreate(key, value, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(String key, CachedClientDetails value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        }).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "fineract.client-details");
+        prefetchExecutor = newBoundedPool("FineractClientDetailsPrefetch", maxConcurrentCalls);
+        callExecutor = newBoundedPool("FineractClientDetailsCall", 2 * maxConcurrentCalls);
+        callLatency = connectorMetrics.registerClientDetailsLatency();
+    }
+
+    /**
+     * Creates a Camel managed pool of a fixed size without a queue, rejecting the tasks submitted while all its threads
+     * are busy.
+     *
+     * @param name
+     *            the pool name
+     * @param size
+     *            the number of threads
+     * @return {@link ExecutorService}
+     */
+    private ExecutorService newBoundedPool(String name, int size) {
+        ThreadPoolProfile profile = new ThreadPoolProfile(name);
+        profile.setPoolSize(size);
+        profile.setMaxPoolSize(size);
+        profile.setMaxQueueSize(0);
+        profile.setRejectedPolicy(ThreadPoolRejectedPolicy.Abort);
+        return camelContext.getExecutorServiceManager().newThreadPool(this, name, profile);
+    }
+
+    /**
+     * Starts looking up the client details on a copy of the exchange. The transaction ID and account properties must
+     * already be set.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    public void prefetch(Exchange exchange) {
+        Exchange copy = exchange.copy();
+        try {
+            exchange.setProperty(PREFETCHED_LOOKUP_PROPERTY, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return lookup(copy);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, prefetchExecutor));
+        } catch (RejectedExecutionException e) {
+            log.debug("No thread free to prefetch the client details of transaction {}",
+                    exchange.getProperty(TRANSACTION_ID));
+        }
+    }
+
+    /**
+     * Discards the prefetched lookup of the exchange, if any. The lookup still completes and its result is cached.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    public static void discardPrefetch(Exchange exchange) {
+        exchange.removeProperty(PREFETCHED_LOOKUP_PROPERTY);
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        CompletableFuture<?> prefetched = exchange.getProperty(PREFETCHED_LOOKUP_PROPERTY, CompletableFuture.class);
+        if (prefetched != null) {
+            discardPrefetch(exchange);
+            try {
+                exchange.getIn().setBody(prefetched.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            return;
+        }
+        exchange.getIn().setBody(lookup(exchange));
+    }
+
+    private FineractGetValidationResponse[] lookup(Exchange exchange) throws Exception {
+        String key = exchange.getProperty(FINERACT_TENANT, String.class) + ":"
+                + exchange.getProperty(TRANSACTION_ID, String.class) + ":"
+                + exchange.getProperty(ACCOUNT_VARIABLE_NAME, String.class);
+        CachedClientDetails cached = isCacheEnabled ? cache.getIfPresent(key) : null;
+        if (cached != null) {
+            log.debug("Fineract client details for transaction {} found in cache", key);
+            return cached.response();
+        }
+
+        if (isHedgingEnabled) {
+            sendHedged(exchange);
+        } else {
+            producerTemplate.send(CLIENT_DETAILS_ROUTE, exchange);
+        }
+        Integer statusCode = exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        FineractGetValidationResponse[] response = null;
+        if (statusCode != null && statusCode == 200) {
+            response = objectMapper.readValue(exchange.getIn().getBody(String.class),
+                    FineractGetValidationResponse[].class);
+        }
+        if (isCacheEnabled && statusCode != null && (statusCode == 200 || statusCode == 404)) {
+            cache.put(key, new CachedClientDetails(response));
+        }
+        return response;
+    }
+
+    /**
+     * Calls Fineract on a copy of the exchange, hedging the call with a second one when it is not answered within the
+     * hedge delay and the hedge budget allows it. The answer received first is copied to the exchange.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     * @throws Exception
+     *             if the lookup is interrupted
+     */
+    private void sendHedged(Exchange exchange) throws Exception {
+        earnHedgeCredit();
+        CompletableFuture<Exchange> call;
+        try {
+            call = sendAsync(exchange.copy());
+        } catch (RejectedExecutionException e) {
+            // All the call threads are busy, so the call is made on this thread and can't be hedged
+            send(exchange);
+            return;
+        }
+        Exchange answer;
+        try {
+            answer = call.get(getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            answer = hedge(exchange, call);
+        }
+
+        exchange.getProperties().putAll(answer.getProperties());
+        exchange.getIn().setHeaders(answer.getIn().getHeaders());
+        exchange.getIn().setBody(answer.getIn().getBody());
+        exchange.setException(answer.getException());
+    }
+
+    /**
+     * Hedges a call still unanswered after the hedge delay when the hedge budget allows it and a call thread is free,
+     * cancelling the call that loses.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     * @param call
+     *            the call in flight
+     * @return the exchange answered first
+     * @throws Exception
+     *             if the lookup is interrupted
+     */
+    private Exchange hedge(Exchange exchange, CompletableFuture<Exchange> call) throws Exception {
+        if (!tryHedge()) {
+            connectorMetrics.clientDetailsLookupHedged("skipped");
+            return call.get();
+        }
+        Exchange hedgeExchange = exchange.copy();
+        CompletableFuture<Exchange> hedge;
+        try {
+            hedge = sendAsync(hedgeExchange);
+        } catch (RejectedExecutionException e) {
+            refundHedgeCredit();
+            connectorMetrics.clientDetailsLookupHedged("skipped");
+            return call.get();
+        }
+
+        Exchange answer = (Exchange) CompletableFuture.anyOf(call, hedge).get();
+        // Interrupts the call that lost, which gives its thread and its bulkhead slot back
+        (answer == hedgeExchange ? call : hedge).cancel(true);
+        connectorMetrics.clientDetailsLookupHedged(answer == hedgeExchange ? "won" : "lost");
+        log.debug("Hedged Fineract client details call for transaction {}", exchange.getProperty(TRANSACTION_ID));
+        return answer;
+    }
+
+    /**
+     * Calls Fineract on a call thread. Cancelling the returned future interrupts the call.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     * @return the future completed with the answered exchange
+     * @throws RejectedExecutionException
+     *             if all the call threads are busy
+     */
+    private CompletableFuture<Exchange> sendAsync(Exchange exchange) {
+        CompletableFuture<Exchange> answer = new CompletableFuture<>();
+        Future<?> task = callExecutor.submit(() -> {
+            try {
+                answer.complete(send(exchange));
+            } catch (RuntimeException e) {
+                answer.completeExceptionally(e);
+            }
+        });
+        answer.whenComplete((result, throwable) -> {
+            if (answer.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return answer;
+    }
+
+    private Exchange send(Exchange exchange) {
+        long start = System.nanoTime();
+        Exchange answer = producerTemplate.send(CLIENT_DETAILS_ROUTE, exchange);
+        callLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return answer;
+    }
+
+    private long getHedgeDelayNanos() {
+        long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs);
+        for (ValueAtPercentile percentile : callLatency.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.95) {
+                return Math.max(minDelayNanos, (long) percentile.value(TimeUnit.NANOSECONDS));
+            }
+        }
+        return minDelayNanos;
+    }
+
+    private synchronized void earnHedgeCredit() {
+        hedgeCredits = Math.min(MAX_HEDGE_CREDITS, hedgeCredits + hedgeMaxRatio);
+    }
+
+    private synchronized void refundHedgeCredit() {
+        hedgeCredits = Math.min(MAX_HEDGE_CREDITS, hedgeCredits + 1);
+    }
+
+    private synchronized boolean tryHedge() {
+        if (hedgeCredits < 1) {
+            return false;
+        }
+        hedgeCredits--;
+        return true;
+    }
+
+    private record CachedClientDetails(FineractGetValidationResponse[] response) {
+    }
+}
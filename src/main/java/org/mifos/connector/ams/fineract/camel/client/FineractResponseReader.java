@@ -0,0 +1,99 @@
+package org.mifos.connector.ams.fineract.camel.client;
+
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads the body of a Fineract response once, replacing the response stream by its decoded text, so that the logs, the
+ * error description parsing and the unmarshalling of the response share it without stream caching. The body is read
+ * into buffers taken from a bounded pool and is truncated past the max response size, so that a huge error page does
+ * not fill the heap.
+ */
+@Slf4j
+@Component
+public class FineractResponseReader implements Processor {
+
+    // Longest response body kept, in bytes, longer bodies being truncated
+    @Value("${fineract.http.response.max-size}")
+    private int maxSize;
+
+    // Size in bytes of the pooled buffers, which fit most responses without growing
+    @Value("${fineract.http.response.buffer-size}")
+    private int bufferSize;
+
+    @Value("${fineract.http.response.pool-size}")
+    private int poolSize;
+
+    private BlockingQueue<byte[]> buffers;
+
+    @PostConstruct
+    void setupPool() {
+        bufferSize = Math.min(bufferSize, maxSize);
+        buffers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message message = exchange.getIn();
+        Object body = message.getBody();
+        if (body instanceof InputStream stream) {
+            message.setBody(read(exchange, stream));
+        } else if (body instanceof byte[] bytes) {
+            message.setBody(new String(bytes, 0, Math.min(bytes.length, maxSize), StandardCharsets.UTF_8));
+            logTruncated(exchange, bytes.length > maxSize);
+        } else if (body instanceof String text && text.length() > maxSize) {
+            message.setBody(text.substring(0, maxSize));
+            logTruncated(exchange, true);
+        }
+    }
+
+    private String read(Exchange exchange, InputStream stream) throws IOException {
+        byte[] pooled = buffers.poll();
+        byte[] buffer = pooled != null ? pooled : new byte[bufferSize];
+        int length = 0;
+        boolean isTruncated = false;
+        try (stream) {
+            while (true) {
+                if (length == buffer.length) {
+                    if (length >= maxSize) {
+                        isTruncated = stream.read() != -1;
+                        break;
+                    }
+                    buffer = Arrays.copyOf(buffer, Math.min(maxSize, length * 2));
+                }
+                int read = stream.read(buffer, length, buffer.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+            logTruncated(exchange, isTruncated);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            // Grown buffers are left to the garbage collector, so that the pool only holds buffers of the base size
+            if (buffer.length == bufferSize) {
+                buffers.offer(buffer);
+            }
+        }
+    }
+
+    private void logTruncated(Exchange exchange, boolean isTruncated) {
+        if (isTruncated) {
+            log.warn("Fineract response for transaction {} truncated to {} bytes", exchange.getProperty(TRANSACTION_ID),
+                    maxSize);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.mifos.connector.ams.fineract.camel.client;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CAMEL_HTTP_RESPONSE_CODE;
+
+import io.netty.channel.ChannelOption;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.support.AsyncProcessorSupport;
+import org.mifos.connector.ams.fineract.tenant.FineractTenant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Reactor Netty transport for the Fineract calls, used by the Fineract call routes in place of the Camel HTTP producer
+ * when {@code fineract.http.client} is {@code reactive}. Each request has its own timeout, after which it is cancelled
+ * and its connection released, and the connections are pooled per tenant.
+ *
+ * <p>
+ * The call is not asynchronous end to end: the processors run inside the resilience4j circuit breaker of the route,
+ * which calls them synchronously, so the routing thread still waits for the response while the request is on the event
+ * loop. The thread use is the same as with the Camel HTTP producer; only the transport, the timeouts and the pools
+ * differ.
+ *
+ * <p>
+ * The processors keep the contract of the Camel HTTP producer they replace: the request is built from the exchange
+ * method, path, headers and body, and the response status, headers and body are set on the exchange, a failed call
+ * being reported as an exception.
+ *
+ * <p>
+ * Each tenant gets its own connection pool, sized from its connection settings, so that a slow tenant can't hold the
+ * connections of the others. Only the first {@code fineract.http.response.max-size} bytes of a response body and one
+ * more are kept, the rest being discarded, so that the {@link FineractResponseReader} truncates the body as it does for
+ * the Camel HTTP producer.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "fineract.http.client", havingValue = "reactive")
+public class ReactiveFineractClient {
+
+    private final long connectionTimeToLive;
+    private final long maxIdleTime;
+    private final int maxResponseSize;
+    private final int connectTimeout;
+    private final Map<String, WebClient> webClients = new ConcurrentHashMap<>();
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
+    public ReactiveFineractClient(@Value("${fineract.http.connection-time-to-live}") long connectionTimeToLive,
+            @Value("${fineract.http.max-idle-time}") long maxIdleTime,
+            @Value("${fineract.http.response.max-size}") int maxResponseSize,
+            @Value("${ams.timeout}") int connectTimeout) {
+        this.connectionTimeToLive = connectionTimeToLive;
+        this.maxIdleTime = maxIdleTime;
+        this.maxResponseSize = maxResponseSize;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Creates the processor calling a Fineract endpoint of a tenant.
+     *
+     * @param tenant
+     *            {@link FineractTenant}, whose connection pool is used
+     * @param url
+     *            the Fineract url to be called, the exchange {@link Exchange#HTTP_PATH} being appended to it
+     * @param timeout
+     *            the time after which a call is cancelled and fails
+     * @return {@link AsyncProcessor}, whose callback is called from the event loop, the circuit breaker of the route
+     *         waiting for it
+     */
+    public AsyncProcessor createProcessor(FineractTenant tenant, String url, Duration timeout) {
+        WebClient webClient = webClients.computeIfAbsent(tenant.getId(), id -> createWebClient(tenant));
+        return new AsyncProcessorSupport() {
+
+            @Override
+            public boolean process(Exchange exchange, AsyncCallback callback) {
+                send(webClient, url, timeout, exchange, callback);
+                return false;
+            }
+        };
+    }
+
+    /** Closes the pooled connections. */
+    @PreDestroy
+    public void shutdown() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    private WebClient createWebClient(FineractTenant tenant) {
+        // Reactor Netty keeps a pool of this size per remote address, without any bound over all of them, so the
+        // tenant's total is only kept when it is the smaller size
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("fineract-" + tenant.getId())
+                .maxConnections(Math.min(tenant.getMaxTotalConnections(), tenant.getMaxConnectionsPerRoute()))
+                .maxLifeTime(Duration.ofMillis(connectionTimeToLive)).maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .pendingAcquireTimeout(Duration.ofMillis(connectTimeout)).build();
+        connectionProviders.add(connectionProvider);
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    private void send(WebClient webClient, String url, Duration timeout, Exchange exchange, AsyncCallback callback) {
+        Message message = exchange.getIn();
+        String path = message.getHeader(Exchange.HTTP_PATH, String.class);
+        String uri = path == null || path.isEmpty() ? url : url + (path.startsWith("/") ? path : "/" + path);
+        HttpMethod method = HttpMethod.valueOf(message.getHeader(Exchange.HTTP_METHOD, "POST", String.class));
+        byte[] body = message.getBody(byte[].class);
+
+        WebClient.RequestBodySpec request = webClient.method(method).uri(uri)
+                .headers(headers -> copyRequestHeaders(message.getHeaders(), headers));
+        WebClient.RequestHeadersSpec<?> spec = body != null && method != HttpMethod.GET ? request.bodyValue(body)
+                : request;
+        spec.exchangeToMono(response -> readBody(response).map(responseBody -> {
+            message.getHeaders().clear();
+            response.headers().asHttpHeaders().forEach((name, values) -> message.setHeader(name, values.get(0)));
+            message.setHeader(CAMEL_HTTP_RESPONSE_CODE, response.rawStatusCode());
+            message.setBody(responseBody);
+            return responseBody;
+        })).timeout(timeout).subscribe(ignored -> {}, throwable -> {
+            log.error("Fineract call to {} failed: {}", uri, throwable.toString());
+            exchange.setException(throwable);
+            callback.done(false);
+        }, () -> callback.done(false));
+    }
+
+    /**
+     * Reads the body of a response up to one byte past the max response size, the rest of the body being discarded, so
+     * that the response reader knows that the body has to be truncated.
+     *
+     * @param response
+     *            {@link ClientResponse}
+     * @return the body bytes, empty for a response without a body
+     */
+    private Mono<byte[]> readBody(ClientResponse response) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        return response.bodyToFlux(DataBuffer.class).doOnNext(buffer -> {
+            try {
+                byte[] bytes = new byte[Math.min(buffer.readableByteCount(), maxResponseSize + 1 - body.size())];
+                buffer.read(bytes);
+                body.writeBytes(bytes);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }).takeUntil(buffer -> body.size() > maxResponseSize).then(Mono.fromCallable(body::toByteArray));
+    }
+
+    /**
+     * Copies the exchange headers to be sent to Fineract, leaving out the Camel headers as the Camel HTTP producer
+     * does.
+     *
+     * @param exchangeHeaders
+     *            the headers of the exchange
+     * @param headers
+     *            the headers of the request
+     */
+    private static void copyRequestHeaders(Map<String, Object> exchangeHeaders, HttpHeaders headers) {
+        exchangeHeaders.forEach((name, value) -> {
+            if (value != null && !name.regionMatches(true, 0, "Camel", 0, 5)
+                    && !name.regionMatches(true, 0, "org.apache.camel", 0, 16)
+                    && !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.HOST.equalsIgnoreCase(name)) {
+                headers.set(name, value.toString());
+            }
+        });
+    }
+}
@@ -15,6 +15,9 @@ public class CamelContextConfig {
     @Value("${camel.server-port}")
     private int serverPort;
 
+    @Value("${zeebe.client.virtual-threads-enabled:false}")
+    private boolean isVirtualThreadsEnabled;
+
     /**
      * Configures the camel context to be used.
      *
@@ -28,8 +31,12 @@ public class CamelContextConfig {
             public void beforeApplicationStart(CamelContext camelContext) {
                 camelContext.setTracing(false);
                 camelContext.setMessageHistory(false);
-                camelContext.setStreamCaching(true);
+                // The Fineract responses are read once by the FineractResponseReader instead of being cached
+                camelContext.setStreamCaching(false);
                 camelContext.disableJMX();
+                if (isVirtualThreadsEnabled) {
+                    camelContext.getExecutorServiceManager().setThreadPoolFactory(new VirtualThreadPoolFactory());
+                }
 
                 RestConfiguration rest = new RestConfiguration();
                 camelContext.setRestConfiguration(rest);
@@ -12,10 +12,18 @@ public class CamelProperties {
     public static final String AMOUNT_VARIABLE_NAME = "amount";
     public static final String CURRENCY_VARIABLE_NAME = "currency";
     public static final String MSISDN_VARIABLE_NAME = "msisdn";
+    public static final String ACCOUNT_VARIABLE_NAME = "account";
     public static final String CLIENT_NAME_VARIABLE_NAME = "clientName";
     public static final String CUSTOM_DATA_VARIABLE_NAME = "customData";
     public static final String ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME = "accountHoldingInstitutionId";
     public static final String ERROR_INFORMATION = "errorInformation";
     public static final String GET_ACCOUNT_DETAILS_FLAG = "getAccountDetails";
+    public static final String FINERACT_TENANT = "fineractTenant";
+
+    // Error codes
+    public static final String FINERACT_CIRCUIT_OPEN_ERROR_CODE = "FINERACT_CIRCUIT_OPEN";
+    public static final String FINERACT_BULKHEAD_FULL_ERROR_CODE = "FINERACT_BULKHEAD_FULL";
+    public static final String FINERACT_CALL_FAILED_ERROR_CODE = "FINERACT_CALL_FAILED";
+    public static final String FINERACT_RATE_LIMITED_ERROR_CODE = "FINERACT_RATE_LIMITED";
 
 }
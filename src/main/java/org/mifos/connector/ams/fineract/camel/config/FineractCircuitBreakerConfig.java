@@ -0,0 +1,33 @@
+package org.mifos.connector.ams.fineract.camel.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the circuit breakers guarding the Fineract endpoints. The circuit breakers are configured
+ * under resilience4j.circuitbreaker.instances and their state is exposed through actuator.
+ */
+@Configuration
+public class FineractCircuitBreakerConfig {
+
+    public static final String VALIDATION_CIRCUIT_BREAKER = "fineract-validation";
+    public static final String CONFIRMATION_CIRCUIT_BREAKER = "fineract-confirmation";
+    public static final String CLIENT_DETAILS_CIRCUIT_BREAKER = "fineract-client-details";
+
+    @Bean(name = VALIDATION_CIRCUIT_BREAKER)
+    public CircuitBreaker validationCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return circuitBreakerRegistry.circuitBreaker(VALIDATION_CIRCUIT_BREAKER);
+    }
+
+    @Bean(name = CONFIRMATION_CIRCUIT_BREAKER)
+    public CircuitBreaker confirmationCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return circuitBreakerRegistry.circuitBreaker(CONFIRMATION_CIRCUIT_BREAKER);
+    }
+
+    @Bean(name = CLIENT_DETAILS_CIRCUIT_BREAKER)
+    public CircuitBreaker clientDetailsCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return circuitBreakerRegistry.circuitBreaker(CLIENT_DETAILS_CIRCUIT_BREAKER);
+    }
+}
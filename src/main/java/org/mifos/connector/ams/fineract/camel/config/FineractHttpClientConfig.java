@@ -0,0 +1,61 @@
+package org.mifos.connector.ams.fineract.camel.config;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/** Configuration class for the HTTP client shared by all the Fineract endpoints of the default tenant. */
+@Configuration
+public class FineractHttpClientConfig {
+
+    public static final String FINERACT_CONNECTION_MANAGER = "fineractConnectionManager";
+
+    @Value("${fineract.http.max-total-connections}")
+    private int maxTotalConnections;
+
+    @Value("${fineract.http.max-connections-per-route}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${fineract.http.connection-time-to-live}")
+    private long connectionTimeToLive;
+
+    @Value("${fineract.http.validate-after-inactivity}")
+    private int validateAfterInactivity;
+
+    /**
+     * Configures the pooled connection manager used by the Fineract HTTP endpoints. Connections are kept alive and
+     * reused across requests, so TLS sessions are only negotiated when a new connection is opened.
+     *
+     * @return {@link PoolingHttpClientConnectionManager}
+     */
+    @Bean(name = FINERACT_CONNECTION_MANAGER, destroyMethod = "shutdown")
+    public PoolingHttpClientConnectionManager fineractConnectionManager() {
+        return createConnectionManager(maxTotalConnections, maxConnectionsPerRoute, connectionTimeToLive,
+                validateAfterInactivity);
+    }
+
+    /**
+     * Creates a pooled connection manager for Fineract HTTP endpoints.
+     *
+     * @param maxTotalConnections
+     *            the max number of connections in the pool
+     * @param maxConnectionsPerRoute
+     *            the max number of connections to the same host
+     * @param connectionTimeToLive
+     *            the time to live of a connection, in milliseconds
+     * @param validateAfterInactivity
+     *            the inactivity in milliseconds after which a connection is validated before being reused
+     * @return {@link PoolingHttpClientConnectionManager}
+     */
+    public static PoolingHttpClientConnectionManager createConnectionManager(int maxTotalConnections,
+            int maxConnectionsPerRoute, long connectionTimeToLive, int validateAfterInactivity) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                connectionTimeToLive, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+        return connectionManager;
+    }
+}
@@ -0,0 +1,98 @@
+package org.mifos.connector.ams.fineract.camel.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.apache.camel.support.DefaultThreadPoolFactory;
+
+/**
+ * Thread pool factory creating a virtual thread per task for the pools Camel uses to process exchanges, such as the
+ * producer template async pool. The max pool size of a profile still bounds the number of tasks running at once, the
+ * submitter waiting for a running task to end, so that a pool does not open more Fineract connections than it was sized
+ * for. Scheduled pools are still backed by platform threads.
+ */
+public class VirtualThreadPoolFactory extends DefaultThreadPoolFactory {
+
+    @Override
+    public ExecutorService newCachedThreadPool(ThreadFactory threadFactory) {
+        return newVirtualThreadPerTaskExecutor();
+    }
+
+    @Override
+    public ExecutorService newThreadPool(ThreadPoolProfile profile, ThreadFactory threadFactory) {
+        Integer maxPoolSize = profile.getMaxPoolSize();
+        if (maxPoolSize == null || maxPoolSize <= 0) {
+            return newVirtualThreadPerTaskExecutor();
+        }
+        return new BoundedExecutorService(newVirtualThreadPerTaskExecutor(), maxPoolSize);
+    }
+
+    private ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("camel-virtual-", 0).factory());
+    }
+
+    /** Executor running at most a given number of tasks of a delegate executor at once. */
+    private static class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutorService(ExecutorService delegate, int maxRunningTasks) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxRunningTasks);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a running task to end", e);
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
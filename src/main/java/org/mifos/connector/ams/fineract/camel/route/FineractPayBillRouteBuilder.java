@@ -3,13 +3,24 @@ package org.mifos.connector.ams.fineract.camel.route;
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME;
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CLIENT_NAME_VARIABLE_NAME;
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CUSTOM_DATA_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.ERROR_DESCRIPTION;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.PARTY_LOOKUP_FAILED;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.json.JSONArray;
 import org.json.JSONObject;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
+import org.mifos.connector.ams.fineract.tenant.FineractTenantRegistry;
 import org.mifos.connector.common.camel.ErrorHandlerRouteBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -20,15 +31,86 @@ import org.springframework.stereotype.Component;
 @Component
 public class FineractPayBillRouteBuilder extends ErrorHandlerRouteBuilder {
 
+    private static final String PAYBILL_VALIDATION_START_PROPERTY = "paybillValidationStart";
+    private static final String KAFKA_KEY_PROPERTY = "paybillValidationKafkaKey";
+
+    private final ConnectorMetrics connectorMetrics;
+    private final FineractTenantRegistry tenantRegistry;
+
+    // Max number of paybills validated at once across the batch validation requests
+    @Value("${ams.paybill.batch.parallelism}")
+    private int batchParallelism;
+
+    @Value("${ams.paybill.batch.max-size}")
+    private int batchMaxSize;
+
+    // Consumes the paybill validations from a Kafka topic, publishing their results to the reply topic
+    @Value("${ams.paybill.kafka.enabled}")
+    private boolean isKafkaEnabled;
+
+    @Value("${ams.paybill.kafka.topic}")
+    private String kafkaTopic;
+
+    @Value("${ams.paybill.kafka.reply-topic}")
+    private String kafkaReplyTopic;
+
+    @Value("${ams.paybill.kafka.group-id}")
+    private String kafkaGroupId;
+
+    // Consumers of the topic, each one consuming its share of the partitions
+    @Value("${ams.paybill.kafka.concurrency}")
+    private int kafkaConcurrency;
+
+    @Value("${ams.paybill.kafka.max-poll-records}")
+    private int kafkaMaxPollRecords;
+
+    // Interval in milliseconds between the commits of the offsets of the validated paybills
+    @Value("${ams.paybill.kafka.commit-interval}")
+    private int kafkaCommitInterval;
+
+    public FineractPayBillRouteBuilder(ConnectorMetrics connectorMetrics, FineractTenantRegistry tenantRegistry) {
+        this.connectorMetrics = connectorMetrics;
+        this.tenantRegistry = tenantRegistry;
+    }
+
     @Override
     public void configure() {
         from("rest:POST:/api/v1/paybill/validate/fineract").id("validate-user")
-                .log(LoggingLevel.INFO, "## Fineract user validation").setBody(e -> {
+                .log(LoggingLevel.INFO, "## Fineract user validation")
+                .process(FineractPayBillRouteBuilder::setAccountHoldingInstitutionId).to("direct:paybill-validation");
+
+        // The paybills of a batch are validated in parallel, the results being returned in the order of the paybills
+        ExecutorService batchExecutor = getContext().getExecutorServiceManager().newFixedThreadPool(this,
+                "PaybillBatchValidation", batchParallelism);
+        from("rest:POST:/api/v1/paybill/validate/fineract/batch").id("validate-user-batch")
+                .log(LoggingLevel.INFO, "## Fineract batch user validation")
+                .process(FineractPayBillRouteBuilder::setAccountHoldingInstitutionId).process(e -> {
+                    JSONArray payloads = new JSONArray(e.getIn().getBody(String.class));
+                    List<String> batch = new ArrayList<>(payloads.length());
+                    for (int i = 0; i < payloads.length(); i++) {
+                        batch.add(payloads.get(i).toString());
+                    }
+                    e.getIn().setBody(batch);
+                }).choice().when(e -> e.getIn().getBody(List.class).size() > batchMaxSize)
+                .log(LoggingLevel.ERROR, "Paybill batch of ${body.size} items larger than the max size " + batchMaxSize)
+                .setHeader(Exchange.HTTP_RESPONSE_CODE, constant(413))
+                .setBody(constant(new JSONObject()
+                        .put(ERROR_DESCRIPTION, "Paybill batch larger than the max size of " + batchMaxSize)
+                        .toString()))
+                .otherwise().split(body(), FineractPayBillRouteBuilder::aggregateBatchResult).parallelProcessing()
+                .executorService(batchExecutor).to("direct:paybill-validation").end()
+                .process(e -> e.getIn().setBody("[" + String.join(",", e.getIn().getBody(List.class)) + "]"))
+                .end();
+
+        if (isKafkaEnabled) {
+            configureKafkaValidation();
+        }
+
+        from("direct:paybill-validation").id("paybill-validation")
+                .process(e -> e.setProperty(PAYBILL_VALIDATION_START_PROPERTY, System.nanoTime())).setBody(e -> {
                     String body = e.getIn().getBody(String.class);
                     log.debug("Body : {}", body);
-                    String accountHoldingInstitutionId = String
-                            .valueOf(e.getIn().getHeader(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME));
-                    e.setProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, accountHoldingInstitutionId);
+                    tenantRegistry.setTenant(e);
                     return body;
                 }).to("direct:transfer-validation-base").process(e -> {
                     String transactionId = e.getProperty(TRANSACTION_ID).toString();
@@ -48,6 +130,88 @@ public class FineractPayBillRouteBuilder extends ErrorHandlerRouteBuilder {
                     responseObject.put(CUSTOM_DATA_VARIABLE_NAME, e.getProperty(CUSTOM_DATA_VARIABLE_NAME));
                     log.debug("response object: {} ", responseObject);
                     e.getIn().setBody(responseObject.toString());
+                    connectorMetrics.paybillValidationCompleted(e.getProperty(FINERACT_TENANT, String.class),
+                            responseObject.getBoolean("reconciled"),
+                            System.nanoTime() - e.getProperty(PAYBILL_VALIDATION_START_PROPERTY, Long.class));
                 });
     }
+
+    /**
+     * Configures the route validating the paybills consumed from the Kafka topic. The payloads and their
+     * accountHoldingInstitutionId header are the ones of the REST endpoint, and the results are published to the reply
+     * topic with the key of the payload, in the shape of the REST response. The offsets are committed periodically once
+     * the paybills are validated, so that a restart replays the paybills validated since the last commit.
+     */
+    private void configureKafkaValidation() {
+        from("kafka:" + kafkaTopic + "?groupId=" + kafkaGroupId + "&consumersCount=" + kafkaConcurrency
+                + "&maxPollRecords=" + kafkaMaxPollRecords + "&autoCommitEnable=true&autoCommitIntervalMs="
+                + kafkaCommitInterval).id("validate-user-kafka")
+                .log(LoggingLevel.INFO, "## Fineract user validation from Kafka")
+                .process(FineractPayBillRouteBuilder::setAccountHoldingInstitutionId)
+                .setProperty(KAFKA_KEY_PROPERTY, header(KafkaConstants.KEY)).doTry().to("direct:paybill-validation")
+                .doCatch(Exception.class).process(e -> e.getIn()
+                        .setBody(failedResult(e, e.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class))))
+                .end().removeHeaders("*").setHeader(KafkaConstants.KEY, exchangeProperty(KAFKA_KEY_PROPERTY))
+                .to("kafka:" + kafkaReplyTopic);
+    }
+
+    /**
+     * Sets the account holding institution id of the request, which is also used to resolve its tenant.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    private static void setAccountHoldingInstitutionId(Exchange exchange) {
+        // Kafka headers are received as bytes, converted here as the REST headers are
+        String accountHoldingInstitutionId = String
+                .valueOf(exchange.getIn().getHeader(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, String.class));
+        exchange.setProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, accountHoldingInstitutionId);
+    }
+
+    /**
+     * Builds the unreconciled result of a paybill whose validation failed with an exception.
+     *
+     * @param exchange
+     *            the exchange of the paybill
+     * @param exception
+     *            the exception
+     * @return the result JSON
+     */
+    private static String failedResult(Exchange exchange, Exception exception) {
+        log.error("Validation of paybill {} failed: {}", exchange.getProperty(TRANSACTION_ID), exception.getMessage());
+        return new JSONObject().put("reconciled", false).put("amsName", "fineract")
+                .put(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME,
+                        exchange.getProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME))
+                .put(TRANSACTION_ID, exchange.getProperty(TRANSACTION_ID))
+                .put(ERROR_DESCRIPTION, exception.getMessage()).toString();
+    }
+
+    /**
+     * Collects the validation result of a paybill of a batch. A paybill whose validation failed with an exception gets
+     * an unreconciled result, so that it does not fail the whole batch.
+     *
+     * @param result
+     *            the exchange holding the results collected so far, null for the first paybill
+     * @param item
+     *            the exchange of the paybill
+     * @return the exchange holding the results
+     */
+    private static Exchange aggregateBatchResult(Exchange result, Exchange item) {
+        String itemResult;
+        if (item.getException() != null) {
+            itemResult = failedResult(item, item.getException());
+            item.setException(null);
+        } else {
+            itemResult = item.getIn().getBody(String.class);
+        }
+
+        if (result == null) {
+            List<String> results = new ArrayList<>();
+            results.add(itemResult);
+            item.getIn().setBody(results);
+            return item;
+        }
+        result.getIn().getBody(List.class).add(itemResult);
+        return result;
+    }
 }
@@ -1,27 +1,57 @@
 package org.mifos.connector.ams.fineract.camel.route;
 
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.*;
+import static org.mifos.connector.ams.fineract.camel.config.FineractCircuitBreakerConfig.CLIENT_DETAILS_CIRCUIT_BREAKER;
+import static org.mifos.connector.ams.fineract.camel.config.FineractCircuitBreakerConfig.CONFIRMATION_CIRCUIT_BREAKER;
+import static org.mifos.connector.ams.fineract.camel.config.FineractCircuitBreakerConfig.VALIDATION_CIRCUIT_BREAKER;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CONFIRMATION_RECEIVED;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CUSTOM_DATA;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.ERROR_CODE;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.ERROR_DESCRIPTION;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.EXTERNAL_ID;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.PARTY_LOOKUP_FAILED;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.SETTLEMENT_QUEUED;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_FAILED;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSFER_SETTLEMENT_FAILED;
 
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
-import org.apache.camel.model.dataformat.JsonLibrary;
-import org.json.JSONArray;
+import org.apache.camel.model.ChoiceDefinition;
+import org.apache.camel.model.CircuitBreakerDefinition;
+import org.apache.camel.spi.CircuitBreakerConstants;
 import org.json.JSONObject;
+import org.mifos.connector.ams.fineract.camel.batch.FineractSettlementBatcher;
+import org.mifos.connector.ams.fineract.camel.cache.FineractClientDetailsCache;
+import org.mifos.connector.ams.fineract.camel.client.FineractResponseReader;
+import org.mifos.connector.ams.fineract.camel.client.ReactiveFineractClient;
+import org.mifos.connector.ams.fineract.data.ChannelRequest;
 import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
 import org.mifos.connector.ams.fineract.data.FineractGetValidationResponse;
 import org.mifos.connector.ams.fineract.data.FineractRequestDto;
+import org.mifos.connector.ams.fineract.data.PayBillRequest;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
+import org.mifos.connector.ams.fineract.outbox.SettlementOutbox;
+import org.mifos.connector.ams.fineract.ratelimit.TokenBucket;
+import org.mifos.connector.ams.fineract.tenant.FineractTenant;
+import org.mifos.connector.ams.fineract.tenant.FineractTenantRegistry;
 import org.mifos.connector.ams.fineract.util.ConnectionUtils;
+import org.mifos.connector.ams.fineract.util.FineractJsonCodec;
+import org.mifos.connector.ams.fineract.util.PayloadLogSampler;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -30,20 +60,87 @@ import org.springframework.stereotype.Component;
 @Component
 public class FineractRouteBuilder extends RouteBuilder {
 
-    @Value("${fineract.base-url}")
-    private String fineractBaseUrl;
+    private static final String FINERACT_CALL_START_PROPERTY = "fineractCallStart";
+    private static final String FINERACT_RATE_LIMITED_PROPERTY = "fineractRateLimited";
+    private static final String FINERACT_TENANT_HEADER = "fineract-platform-tenantid";
+    private static final String CONFIRMATION_REQUEST_PROPERTY = "fineractConfirmationRequest";
 
-    @Value("${fineract.endpoint.validation}")
-    private String validationEndpoint;
+    @Value("${fineract.validation.parallel-client-details:false}")
+    private boolean isParallelClientDetailsEnabled;
 
-    @Value("${fineract.endpoint.confirmation}")
-    private String confirmationEndpoint;
+    @Value("${fineract.batch.settlement.enabled:false}")
+    private boolean isSettlementBatchingEnabled;
 
-    @Value("${fineract.endpoint.client-details}")
-    private String clientDetailsEndpoint;
+    // Connect, connection request and socket timeouts in milliseconds of the calls to each endpoint
+    @Value("${fineract.timeout.validation}")
+    private int validationTimeout;
 
-    @Value("${ams.timeout}")
-    private Integer amsTimeout;
+    @Value("${fineract.timeout.confirmation}")
+    private int confirmationTimeout;
+
+    @Value("${fineract.timeout.client-details}")
+    private int clientDetailsTimeout;
+
+    @Value("${fineract.bulkhead.validation.max-concurrent-calls}")
+    private int validationMaxConcurrentCalls;
+
+    @Value("${fineract.bulkhead.confirmation.max-concurrent-calls}")
+    private int confirmationMaxConcurrentCalls;
+
+    @Value("${fineract.bulkhead.client-details.max-concurrent-calls}")
+    private int clientDetailsMaxConcurrentCalls;
+
+    @Value("${fineract.bulkhead.max-wait}")
+    private int bulkheadMaxWait;
+
+    @Value("${fineract.rate-limit.validation.calls-per-second}")
+    private double validationCallsPerSecond;
+
+    @Value("${fineract.rate-limit.validation.burst}")
+    private int validationBurst;
+
+    @Value("${fineract.rate-limit.confirmation.calls-per-second}")
+    private double confirmationCallsPerSecond;
+
+    @Value("${fineract.rate-limit.confirmation.burst}")
+    private int confirmationBurst;
+
+    @Value("${fineract.rate-limit.client-details.calls-per-second}")
+    private double clientDetailsCallsPerSecond;
+
+    @Value("${fineract.rate-limit.client-details.burst}")
+    private int clientDetailsBurst;
+
+    // Longest time in milliseconds a call waits for the rate limit of its endpoint
+    @Value("${fineract.rate-limit.max-wait}")
+    private long rateLimitMaxWait;
+
+    private final FineractSettlementBatcher settlementBatcher;
+    private final FineractClientDetailsCache clientDetailsCache;
+    private final ConnectorMetrics connectorMetrics;
+    private final PayloadLogSampler payloadLogSampler;
+    private final FineractTenantRegistry tenantRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final SettlementOutbox settlementOutbox;
+    private final FineractResponseReader responseReader;
+    // Null unless the reactive client is enabled, the calls then being made with the Camel HTTP producer
+    private final ReactiveFineractClient reactiveClient;
+
+    public FineractRouteBuilder(FineractSettlementBatcher settlementBatcher,
+            FineractClientDetailsCache clientDetailsCache, ConnectorMetrics connectorMetrics,
+            PayloadLogSampler payloadLogSampler, FineractTenantRegistry tenantRegistry,
+            CircuitBreakerRegistry circuitBreakerRegistry, SettlementOutbox settlementOutbox,
+            FineractResponseReader responseReader, ObjectProvider<ReactiveFineractClient> reactiveClient) {
+        this.settlementBatcher = settlementBatcher;
+        this.clientDetailsCache = clientDetailsCache;
+        this.connectorMetrics = connectorMetrics;
+        this.payloadLogSampler = payloadLogSampler;
+        this.tenantRegistry = tenantRegistry;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.settlementOutbox = settlementOutbox;
+        this.responseReader = responseReader;
+        this.reactiveClient = reactiveClient.getIfAvailable();
+    }
 
     @Override
     public void configure() throws Exception {
@@ -64,26 +161,21 @@ public class FineractRouteBuilder extends RouteBuilder {
         }).log(LoggingLevel.ERROR, "Exception occurred in route transfer-settlement-base: ${exception.message}")
                 .to("direct:error-handler");
 
-        from("direct:error-handler").log(LoggingLevel.ERROR, "Error handler route: ${body}");
+        from("direct:error-handler").process(exchange -> {
+            log.error("Error handler route for transaction {}", exchange.getProperty(TRANSACTION_ID));
+            if (log.isErrorEnabled() && payloadLogSampler.isSampled(exchange)) {
+                log.error("Error handler route body: {}", exchange.getIn().getBody(String.class));
+            }
+        });
 
         from("direct:transfer-validation-base").id("transfer-validation-base")
                 .log(LoggingLevel.INFO, "## Starting transfer Validation base route").to("direct:transfer-validation")
-                .choice().when(header(CAMEL_HTTP_RESPONSE_CODE).isEqualTo("200"))
-                .log(LoggingLevel.INFO,
-                        "Fineract validation successful for transaction ${exchangeProperty." + TRANSACTION_ID + "}")
-                .process(exchange -> {
+                .choice().when(header(CAMEL_HTTP_RESPONSE_CODE).isEqualTo("200")).process(exchange -> {
                     // processing success case
+                    log.info("Fineract validation successful for transaction {}", exchange.getProperty(TRANSACTION_ID));
                     exchange.setProperty(PARTY_LOOKUP_FAILED, false);
-                    exchange.setProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME,
-                            exchange.getProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME));
-                    exchange.setProperty(TRANSACTION_ID, exchange.getProperty(TRANSACTION_ID));
-                    exchange.setProperty(AMOUNT_VARIABLE_NAME, exchange.getProperty(AMOUNT_VARIABLE_NAME));
-                    exchange.setProperty(CURRENCY_VARIABLE_NAME, exchange.getProperty(CURRENCY_VARIABLE_NAME));
-                    exchange.setProperty(MSISDN_VARIABLE_NAME, exchange.getProperty(MSISDN_VARIABLE_NAME));
-                    log.debug("Fineract Validation Success");
                 }).choice().when(exchangeProperty(GET_ACCOUNT_DETAILS_FLAG).isEqualTo(true))
-                .to("direct:get-client-details").unmarshal()
-                .json(JsonLibrary.Jackson, FineractGetValidationResponse[].class).process(e -> {
+                .process(clientDetailsCache).process(e -> {
                     log.debug("Fineract get client details api response: {}", e.getIn().getBody());
                     FineractGetValidationResponse[] clientDetailsResponse = e.getIn()
                             .getBody(FineractGetValidationResponse[].class);
@@ -94,167 +186,454 @@ public class FineractRouteBuilder extends RouteBuilder {
                         e.setProperty(CUSTOM_DATA_VARIABLE_NAME,
                                 FineractGetValidationResponse.convertToCustomData(clientDetails));
                     }
-                }).endChoice().otherwise()
-                .log(LoggingLevel.ERROR,
-                        "Fineract validation unsuccessful for transaction ${exchangeProperty." + TRANSACTION_ID + "}")
-                .process(exchange -> {
+                }).endChoice().otherwise().process(exchange -> {
                     // processing unsuccessful case
+                    log.error("Fineract validation unsuccessful for transaction {}",
+                            exchange.getProperty(TRANSACTION_ID));
+                    FineractClientDetailsCache.discardPrefetch(exchange);
                     exchange.setProperty(PARTY_LOOKUP_FAILED, true);
-                    exchange.setProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME,
-                            exchange.getProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME));
-                    exchange.setProperty(TRANSACTION_ID, exchange.getProperty(TRANSACTION_ID));
-                    exchange.setProperty(AMOUNT_VARIABLE_NAME, exchange.getProperty(AMOUNT_VARIABLE_NAME));
-                    exchange.setProperty(CURRENCY_VARIABLE_NAME, exchange.getProperty(CURRENCY_VARIABLE_NAME));
-                    exchange.setProperty(MSISDN_VARIABLE_NAME, exchange.getProperty(MSISDN_VARIABLE_NAME));
-                    log.debug("Fineract Validation Failure");
                 });
         from("direct:transfer-validation").id("transfer-validation")
-                .log(LoggingLevel.INFO, "## Starting transfer Validation route").removeHeader("*")
-                .setHeader(Exchange.HTTP_METHOD, constant("POST"))
-                .setHeader("Content-Type", constant("application/json")).setBody(exchange -> {
+                .log(LoggingLevel.INFO, "## Starting transfer Validation route").process(tenantRegistry::setTenant)
+                .process(FineractRouteBuilder::setJsonPostHeaders).setBody(exchange -> {
                     FineractRequestDto verificationRequestDto;
                     if (exchange.getProperty(CHANNEL_REQUEST) != null) {
-                        JSONObject channelRequest = (JSONObject) exchange.getProperty(CHANNEL_REQUEST);
-                        JSONArray customData = exchange.getProperty(CUSTOM_DATA, JSONArray.class);
+                        ChannelRequest channelRequest = exchange.getProperty(CHANNEL_REQUEST, ChannelRequest.class);
                         verificationRequestDto = FineractRequestDto.fromChannelRequest(channelRequest,
-                                exchange.getProperty(TRANSACTION_ID, String.class), customData);
+                                exchange.getProperty(TRANSACTION_ID, String.class), getCustomData(exchange));
                     } else {
-                        JSONObject payBillRequest = new JSONObject(exchange.getIn().getBody(String.class));
+                        PayBillRequest payBillRequest = FineractJsonCodec
+                                .readPayBillRequest(exchange.getIn().getBody(String.class));
 
-                        verificationRequestDto = FineractRequestDto.convertPayBillPayloadToAmsPayload(payBillRequest);
+                        verificationRequestDto = FineractRequestDto.fromPayBillRequest(payBillRequest);
                         exchange.setProperty(TRANSACTION_ID, verificationRequestDto.getRemoteTransactionId());
                         exchange.setProperty(AMOUNT_VARIABLE_NAME, verificationRequestDto.getAmount());
                         exchange.setProperty(CURRENCY_VARIABLE_NAME, verificationRequestDto.getCurrency());
                         exchange.setProperty(MSISDN_VARIABLE_NAME, verificationRequestDto.getPhoneNumber());
-                        exchange.setProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME,
-                                exchange.getProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME));
                     }
-                    log.info("Fineract validation request DTO for transaction {} sent on {}: \n{}",
-                            verificationRequestDto.getRemoteTransactionId(), Instant.now(), verificationRequestDto);
+                    if (log.isInfoEnabled() && payloadLogSampler.isSampled(exchange)) {
+                        log.info("Fineract validation request DTO for transaction {} sent on {}: {}",
+                                verificationRequestDto.getRemoteTransactionId(), Instant.now(), verificationRequestDto);
+                    }
                     exchange.setProperty(GET_ACCOUNT_DETAILS_FLAG, verificationRequestDto.isGetAccountDetails());
+                    exchange.setProperty(ACCOUNT_VARIABLE_NAME, verificationRequestDto.getAccount());
                     return verificationRequestDto;
-                }).marshal().json(JsonLibrary.Jackson)
-                .toD(getValidationUrl() + "?bridgeEndpoint=true&throwExceptionOnFailure=false&"
-                        + ConnectionUtils.getConnectionTimeoutDsl(amsTimeout))
-                .log(LoggingLevel.INFO,
-                        "Received Fineract validation response for " + "transaction ${exchangeProperty."
-                                + TRANSACTION_ID
-                                + "} on ${header.Date} with status: ${header.CamelHttpResponseCode}. Body: \n ${body}");
+                }).process(exchange -> {
+                    // The client details lookup can run alongside the validation call, its result being discarded if
+                    // the validation fails
+                    if (isParallelClientDetailsEnabled && exchange.getProperty(GET_ACCOUNT_DETAILS_FLAG, false,
+                            Boolean.class)) {
+                        clientDetailsCache.prefetch(exchange);
+                    }
+                }).process(FineractRouteBuilder::writeRequestBody).to("direct:fineract-validation")
+                .process(logResponse("validation", false));
 
         from("direct:transfer-settlement-base").id("transfer-settlement-base")
                 .log(LoggingLevel.INFO, "## Transfer Settlement route").to("direct:transfer-settlement").choice()
-                .when(header(CAMEL_HTTP_RESPONSE_CODE).isEqualTo("200"))
-                .log(LoggingLevel.INFO,
-                        "Fineract settlement successful for transaction ${exchangeProperty." + TRANSACTION_ID + "}")
-                .process(exchange -> {
+                .when(header(CAMEL_HTTP_RESPONSE_CODE).isEqualTo("200")).process(exchange -> {
                     // processing success case
-                    // check if actual transaction was also successful
-                    Boolean transactionFailed = exchange.getProperty(TRANSACTION_FAILED, Boolean.class);
-                    boolean transferSettlementFailed = !Boolean.FALSE.equals(transactionFailed);
-
-                    // When a direct confirmation request is received, then it's a paybill transaction, and we don't
-                    // have to worry about the transactionFailed flag above.
-                    if (Boolean.TRUE.equals(exchange.getProperty(CONFIRMATION_RECEIVED, Boolean.class))) {
-                        transferSettlementFailed = false;
+                    log.info("Fineract settlement successful for transaction {}", exchange.getProperty(TRANSACTION_ID));
+                    exchange.setProperty(TRANSFER_SETTLEMENT_FAILED, isTransferSettlementFailed(exchange));
+                }).otherwise().process(exchange -> {
+                    // processing unsuccessful case, unless the confirmation is kept by the outbox to be replayed
+                    log.error("Fineract settlement unsuccessful for transaction {}",
+                            exchange.getProperty(TRANSACTION_ID));
+                    FineractConfirmationRequestDto confirmationRequestDto = exchange
+                            .getProperty(CONFIRMATION_REQUEST_PROPERTY, FineractConfirmationRequestDto.class);
+                    if (settlementOutbox.offer(exchange, exchange.getProperty(FINERACT_TENANT, String.class),
+                            confirmationRequestDto)) {
+                        exchange.setProperty(SETTLEMENT_QUEUED, true);
+                        exchange.setProperty(TRANSFER_SETTLEMENT_FAILED, isTransferSettlementFailed(exchange));
+                    } else {
+                        exchange.setProperty(TRANSFER_SETTLEMENT_FAILED, true);
                     }
-                    exchange.setProperty(TRANSFER_SETTLEMENT_FAILED, transferSettlementFailed);
-                }).otherwise()
-                .log(LoggingLevel.ERROR,
-                        "Fineract settlement unsuccessful for transaction ${exchangeProperty." + TRANSACTION_ID + "}")
-                .process(exchange ->
-                // processing unsuccessful case
-                exchange.setProperty(TRANSFER_SETTLEMENT_FAILED, true));
+                });
 
         from("direct:transfer-settlement").id("transfer-settlement")
-                .log(LoggingLevel.INFO, "## Starting transfer settlement route").removeHeader("*")
-                .setHeader(Exchange.HTTP_METHOD, constant("POST"))
-                .setHeader("Content-Type", constant("application/json")).setBody(exchange -> {
+                .log(LoggingLevel.INFO, "## Starting transfer settlement route").process(tenantRegistry::setTenant)
+                .process(FineractRouteBuilder::setJsonPostHeaders).setBody(exchange -> {
                     FineractConfirmationRequestDto confirmationRequestDto;
                     if (exchange.getProperty(CHANNEL_REQUEST) != null) {
-                        JSONObject channelRequest = (JSONObject) exchange.getProperty(CHANNEL_REQUEST);
+                        ChannelRequest channelRequest = exchange.getProperty(CHANNEL_REQUEST, ChannelRequest.class);
 
                         String transactionId = exchange.getProperty(TRANSACTION_ID, String.class);
                         // TNM flow: since the validation flow uses workflowId in the AMS validation call, we need to
                         // use it here as well
-                        Object useWorkflowIdAsTransactionIdObj = channelRequest.has("useWorkflowIdAsTransactionId")
-                                ? channelRequest.get("useWorkflowIdAsTransactionId")
-                                : null;
-                        if (useWorkflowIdAsTransactionIdObj != null && (Boolean) useWorkflowIdAsTransactionIdObj
-                                && channelRequest.has("workflowId")
-                                && channelRequest.get("workflowId") instanceof String workflowId) {
-                            transactionId = workflowId;
+                        if (channelRequest.isUseWorkflowIdAsTransactionId() && channelRequest.getWorkflowId() != null) {
+                            transactionId = channelRequest.getWorkflowId();
                         }
 
                         String externalId = exchange.getProperty(EXTERNAL_ID, String.class);
-                        externalId = Objects.nonNull(externalId) ? externalId : channelRequest.getString(EXTERNAL_ID);
+                        externalId = Objects.nonNull(externalId) ? externalId : channelRequest.getExternalId();
                         confirmationRequestDto = FineractConfirmationRequestDto.fromChannelRequest(channelRequest,
                                 transactionId);
                         confirmationRequestDto.setStatus("successful");
                         confirmationRequestDto.setReceiptId(externalId);
 
                     } else {
-                        JSONObject payBillRequest = new JSONObject(exchange.getIn().getBody(String.class));
+                        PayBillRequest payBillRequest = FineractJsonCodec
+                                .readPayBillRequest(exchange.getIn().getBody(String.class));
 
-                        confirmationRequestDto = FineractConfirmationRequestDto
-                                .convertPayBillPayloadToAmsPayload(payBillRequest);
+                        confirmationRequestDto = FineractConfirmationRequestDto.fromPayBillRequest(payBillRequest);
                         exchange.setProperty(TRANSACTION_ID, confirmationRequestDto.getRemoteTransactionId());
                     }
-                    log.info("Fineract confirmation request DTO for transaction {} sent on {}: \n{}",
-                            confirmationRequestDto.getRemoteTransactionId(), Instant.now(), confirmationRequestDto);
+                    exchange.setProperty(CONFIRMATION_REQUEST_PROPERTY, confirmationRequestDto);
+                    if (log.isInfoEnabled() && payloadLogSampler.isSampled(exchange)) {
+                        log.info("Fineract confirmation request DTO for transaction {} sent on {}: {}",
+                                confirmationRequestDto.getRemoteTransactionId(), Instant.now(), confirmationRequestDto);
+                    }
                     return confirmationRequestDto;
-                }).marshal().json(JsonLibrary.Jackson)
-                .toD(getConfirmationUrl() + "?bridgeEndpoint=true&throwExceptionOnFailure=false&"
-                        + ConnectionUtils.getConnectionTimeoutDsl(amsTimeout))
-                .log(LoggingLevel.INFO,
-                        "Received Fineract confirmation response for " + "transaction ${exchangeProperty."
-                                + TRANSACTION_ID
-                                + "} on ${header.Date} with status: ${header.CamelHttpResponseCode}. Body: \n ${body}");
+                }).choice().when(exchange -> isSettlementBatchingEnabled).process(settlementBatcher).otherwise()
+                .process(FineractRouteBuilder::writeRequestBody).to("direct:fineract-confirmation").end()
+                .process(logResponse("confirmation", false));
+
+        from("direct:transfer-settlement-batch").id("transfer-settlement-batch")
+                .log(LoggingLevel.INFO, "## Starting transfer settlement batch route")
+                .process(FineractRouteBuilder::setJsonPostHeaders).process(FineractRouteBuilder::writeRequestBody)
+                .to("direct:fineract-confirmation-batch")
+                .process(exchange -> log.info("Received Fineract batch confirmation response with status: {}",
+                        exchange.getIn().getHeader(CAMEL_HTTP_RESPONSE_CODE)));
 
         from("direct:get-client-details").id("get-client-details")
                 .log(LoggingLevel.INFO, "## Starting get client details route")
-                .setHeader(Exchange.HTTP_METHOD, constant("GET"))
-                .setHeader("fineract-platform-tenantid", constant("default")).process(e -> {
+                .setHeader(Exchange.HTTP_METHOD, constant("GET")).process(e -> {
                     String transactionId = e.getProperty(TRANSACTION_ID, String.class);
                     e.getIn().setHeader(TRANSACTION_ID, transactionId);
                     e.setProperty(TRANSACTION_ID, transactionId);
-                    e.getIn().setHeader("clientDetailsUrl", getClientDetailsUrl());
+                    // Passing the transaction id as path keeps a single endpoint for all the transactions
+                    e.getIn().setHeader(Exchange.HTTP_PATH, transactionId);
                     log.info("Fineract client details request for transaction {} sent on {}", transactionId,
                             Instant.now());
-                }).log(" ## Transaction id: ${header.transactionId}")
-                .log(" ## Transaction id as property: ${exchangeProperty.transactionId}")
-                .toD("${header.clientDetailsUrl}/${header.transactionId}?bridgeEndpoint=true&throwExceptionOnFailure=false&"
-                        + ConnectionUtils.getConnectionTimeoutDsl(amsTimeout))
-                .log(LoggingLevel.INFO, "Headers: ${headers}")
-                .log(LoggingLevel.INFO, "Status: ${header.CamelHttpResponseCode}").log(LoggingLevel.INFO,
-                        "Received Fineract client details response for " + "transaction ${exchangeProperty."
-                                + TRANSACTION_ID
-                                + "} on ${header.Date} with status: ${header.CamelHttpResponseCode}. Body: ${body}");
+                }).to("direct:fineract-client-details").process(logResponse("client details", true));
+
+        // Batch confirmations share the rate limits of the confirmations, each batch taking one permit
+        Map<String, TokenBucket> confirmationRateLimiters = createRateLimiters(confirmationCallsPerSecond,
+                confirmationBurst);
+        configureFineractCall("fineract-validation", FineractTenant::getValidationUrl, VALIDATION_CIRCUIT_BREAKER,
+                validationMaxConcurrentCalls, createRateLimiters(validationCallsPerSecond, validationBurst),
+                validationTimeout);
+        configureFineractCall("fineract-confirmation", FineractTenant::getConfirmationUrl,
+                CONFIRMATION_CIRCUIT_BREAKER, confirmationMaxConcurrentCalls, confirmationRateLimiters,
+                confirmationTimeout);
+        configureFineractCall("fineract-confirmation-batch", FineractTenant::getConfirmationBatchUrl,
+                CONFIRMATION_CIRCUIT_BREAKER, confirmationMaxConcurrentCalls, confirmationRateLimiters,
+                confirmationTimeout);
+        configureFineractCall("fineract-client-details", FineractTenant::getClientDetailsUrl,
+                CLIENT_DETAILS_CIRCUIT_BREAKER, clientDetailsMaxConcurrentCalls,
+                createRateLimiters(clientDetailsCallsPerSecond, clientDetailsBurst), clientDetailsTimeout);
+    }
+
+    /**
+     * Checks whether a settlement confirmed by Fineract failed, which is the case when the transaction itself failed.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     * @return true if the transfer settlement failed
+     */
+    private static boolean isTransferSettlementFailed(Exchange exchange) {
+        // When a direct confirmation request is received, then it's a paybill transaction, and we don't have to worry
+        // about the transactionFailed flag.
+        if (Boolean.TRUE.equals(exchange.getProperty(CONFIRMATION_RECEIVED, Boolean.class))) {
+            return false;
+        }
+        // check if actual transaction was also successful
+        return !Boolean.FALSE.equals(exchange.getProperty(TRANSACTION_FAILED, Boolean.class));
     }
 
     /**
-     * Combines Fineract base url and the validation endpoint.
+     * Configures the route dispatching the calls to a Fineract endpoint to the route of their tenant, failing fast with
+     * a 429 status when the tenant's rate limit is reached or when the tenant's rate limit of the endpoint is not
+     * available within the max wait. The permits are taken before the dispatch, which only reads the outcome.
      *
-     * @return the full url to be used in Fineract confirmation requests
+     * @param routeId
+     *            the id of the route, also used as its direct endpoint name
+     * @param url
+     *            gives the Fineract url to be called for a tenant
+     * @param circuitBreaker
+     *            the name of the circuit breaker of the default tenant, suffixed by the tenant id for other tenants
+     * @param maxConcurrentCalls
+     *            the max number of concurrent calls allowed by the bulkhead of each tenant
+     * @param rateLimiters
+     *            the rate limits of the endpoint by tenant id, empty when it is not limited
+     * @param timeout
+     *            the timeout in milliseconds of the calls to the endpoint
      */
-    private String getValidationUrl() {
-        return fineractBaseUrl + validationEndpoint;
+    private void configureFineractCall(String routeId, Function<FineractTenant, String> url, String circuitBreaker,
+            int maxConcurrentCalls, Map<String, TokenBucket> rateLimiters, int timeout) {
+        // The tenant routes are static endpoints, so that dispatching a call does not resolve an endpoint
+        ChoiceDefinition dispatch = from("direct:" + routeId).id(routeId).process(tenantRegistry::setTenant)
+                .process(exchange -> exchange.setProperty(FINERACT_RATE_LIMITED_PROPERTY,
+                        !acquirePermit(routeId, rateLimiters, exchange)))
+                .choice().when(exchangeProperty(FINERACT_RATE_LIMITED_PROPERTY).isEqualTo(true))
+                .process(exchange -> failFast(routeId, exchange, FINERACT_RATE_LIMITED_ERROR_CODE, 429));
+
+        for (FineractTenant tenant : tenantRegistry.getTenants()) {
+            String tenantCircuitBreaker = circuitBreaker;
+            if (tenant != tenantRegistry.getDefaultTenant()) {
+                tenantCircuitBreaker = circuitBreaker + "-" + tenant.getId();
+                getContext().getRegistry().bind(tenantCircuitBreaker,
+                        circuitBreakerRegistry.circuitBreaker(tenantCircuitBreaker));
+                dispatch.when(exchange -> tenant.getId().equals(exchange.getProperty(FINERACT_TENANT)))
+                        .to("direct:" + routeId + "-" + tenant.getId());
+            }
+            configureTenantFineractCall(routeId, tenant, url.apply(tenant), tenantCircuitBreaker, maxConcurrentCalls,
+                    timeout);
+        }
+        dispatch.otherwise().to("direct:" + routeId + "-" + tenantRegistry.getDefaultTenant().getId()).end();
     }
 
     /**
-     * Combines Fineract base url and the confirmation endpoint.
+     * Takes a permit for a Fineract call from the rate limit of the exchange's tenant, then from the tenant's rate
+     * limit of the endpoint. The call waits for a permit of the endpoint for up to the max wait, so that bursts are
+     * smoothed instead of being rejected. The permits of a call that is not made are given back, so that a call
+     * rejected by the endpoint's rate limit does not use up the tenant's.
      *
-     * @return the full url to be used in Fineract confirmation requests
+     * @param routeId
+     *            the id of the route making the call
+     * @param rateLimiters
+     *            the rate limits of the endpoint by tenant id, empty when it is not limited
+     * @param exchange
+     *            {@link Exchange}
+     * @return true if the call can be made
      */
-    private String getConfirmationUrl() {
-        return fineractBaseUrl + confirmationEndpoint;
+    private boolean acquirePermit(String routeId, Map<String, TokenBucket> rateLimiters, Exchange exchange) {
+        String tenant = exchange.getProperty(FINERACT_TENANT, String.class);
+        FineractTenant fineractTenant = tenantRegistry.getTenant(tenant);
+        if (!fineractTenant.tryAcquire()) {
+            connectorMetrics.fineractCallThrottled(routeId, tenant, "tenant");
+            return false;
+        }
+        TokenBucket rateLimiter = rateLimiters.get(fineractTenant.getId());
+        if (rateLimiter == null) {
+            return true;
+        }
+
+        long waitNanos = rateLimiter.reserve(TimeUnit.MILLISECONDS.toNanos(rateLimitMaxWait));
+        if (waitNanos < 0) {
+            fineractTenant.release();
+            connectorMetrics.fineractCallThrottled(routeId, tenant, "endpoint");
+            return false;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rateLimiter.release();
+                fineractTenant.release();
+                return false;
+            }
+        }
+        connectorMetrics.fineractCallQueued(routeId, waitNanos);
+        return true;
     }
 
     /**
-     * Combines Fineract base url and the get client details endpoint.
+     * Creates the rate limits of an endpoint, one for each tenant, so that the calls of a busy tenant do not use up the
+     * endpoint's calls of the other tenants.
      *
-     * @return the full url to be used in Fineract get client details requests
+     * @param callsPerSecond
+     *            the calls per second allowed to each tenant, 0 for no limit
+     * @param burst
+     *            the calls allowed at once after an idle period
+     * @return the {@link TokenBucket} of each tenant id, empty when the endpoint is not limited
      */
-    private String getClientDetailsUrl() {
-        return fineractBaseUrl + clientDetailsEndpoint;
+    private Map<String, TokenBucket> createRateLimiters(double callsPerSecond, int burst) {
+        Map<String, TokenBucket> rateLimiters = new HashMap<>();
+        if (callsPerSecond > 0) {
+            tenantRegistry.getTenants()
+                    .forEach(tenant -> rateLimiters.put(tenant.getId(), new TokenBucket(callsPerSecond, burst)));
+        }
+        return rateLimiters;
+    }
+
+    /**
+     * Configures the route calling a Fineract endpoint of a tenant behind its circuit breaker and bulkhead, with the
+     * Camel HTTP producer or with the reactive client when it is enabled, the response body being read once by the
+     * {@link FineractResponseReader}. When the circuit is open, the bulkhead is full or the call fails, the route fails
+     * fast with a 503 status and a distinct error code. A response with a server error status is counted as a failure
+     * by the circuit breaker, and is then passed on with its status and body. The latency of each call is recorded by
+     * tenant and HTTP status.
+     *
+     * @param routeId
+     *            the id of the dispatching route, suffixed by the tenant id for the id of the route
+     * @param tenant
+     *            {@link FineractTenant}
+     * @param url
+     *            the Fineract url to be called
+     * @param circuitBreaker
+     *            the name of the circuit breaker bean
+     * @param maxConcurrentCalls
+     *            the max number of concurrent calls allowed by the bulkhead
+     * @param timeout
+     *            the timeout in milliseconds of the calls
+     */
+    private void configureTenantFineractCall(String routeId, FineractTenant tenant, String url, String circuitBreaker,
+            int maxConcurrentCalls, int timeout) {
+        CircuitBreakerDefinition call = from("direct:" + routeId + "-" + tenant.getId())
+                .id(routeId + "-" + tenant.getId())
+                .setHeader(FINERACT_TENANT_HEADER, constant(tenant.getPlatformTenantId()))
+                .process(exchange -> exchange.setProperty(FINERACT_CALL_START_PROPERTY, System.nanoTime()))
+                .circuitBreaker().resilience4jConfiguration().circuitBreaker(circuitBreaker).bulkheadEnabled(true)
+                .bulkheadMaxConcurrentCalls(maxConcurrentCalls).bulkheadMaxWaitDuration(bulkheadMaxWait).end();
+        if (reactiveClient != null) {
+            call.process(reactiveClient.createProcessor(tenant, url, Duration.ofMillis(timeout)));
+        } else {
+            call.to(url + getHttpEndpointOptions(tenant, timeout));
+        }
+        call.process(responseReader).process(FineractRouteBuilder::throwOnServerError);
+        call.onFallback().process(exchange -> {
+            if (exchange.getProperty(Exchange.EXCEPTION_CAUGHT) instanceof FineractServerErrorException error) {
+                // The server error is recorded by the circuit breaker, and is passed on as answered by Fineract
+                exchange.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, error.getStatus());
+                exchange.getIn().setBody(error.getBody());
+                return;
+            }
+            String errorCode;
+            if (exchange.getProperty(CircuitBreakerConstants.RESPONSE_SHORT_CIRCUITED, false, Boolean.class)) {
+                errorCode = FINERACT_CIRCUIT_OPEN_ERROR_CODE;
+            } else if (exchange.getProperty(CircuitBreakerConstants.RESPONSE_REJECTED, false, Boolean.class)) {
+                errorCode = FINERACT_BULKHEAD_FULL_ERROR_CODE;
+            } else {
+                errorCode = FINERACT_CALL_FAILED_ERROR_CODE;
+            }
+            failFast(routeId, exchange, errorCode, 503);
+        }).end().process(exchange -> connectorMetrics.fineractCallCompleted(routeId, tenant.getId(),
+                exchange.getIn().getHeader(CAMEL_HTTP_RESPONSE_CODE),
+                System.nanoTime() - exchange.getProperty(FINERACT_CALL_START_PROPERTY, Long.class)));
+    }
+
+    /**
+     * Fails a Fineract call without calling Fineract, setting the error code and a response with the given status.
+     *
+     * @param routeId
+     *            the id of the route making the call
+     * @param exchange
+     *            {@link Exchange}
+     * @param errorCode
+     *            the error code, telling why the call failed fast
+     * @param status
+     *            the HTTP status of the response
+     */
+    private static void failFast(String routeId, Exchange exchange, String errorCode, int status) {
+        log.error("Fineract call {} for transaction {} failed fast with {}", routeId,
+                exchange.getProperty(TRANSACTION_ID), errorCode);
+        exchange.setProperty(ERROR_CODE, errorCode);
+        exchange.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, status);
+        exchange.getIn()
+                .setBody(new JSONObject().put(ERROR_DESCRIPTION, "Fineract call failed fast: " + errorCode).toString());
+    }
+
+    /**
+     * Fails the Fineract call when Fineract answers with a server error status, since the HTTP endpoints don't throw on
+     * failure and the circuit breaker only records the calls that throw.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    private static void throwOnServerError(Exchange exchange) {
+        Integer status = exchange.getIn().getHeader(CAMEL_HTTP_RESPONSE_CODE, Integer.class);
+        if (status != null && status >= 500) {
+            throw new FineractServerErrorException(status, exchange.getIn().getBody(String.class));
+        }
+    }
+
+    /**
+     * Sets the headers of a JSON POST request to Fineract.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    private static void setJsonPostHeaders(Exchange exchange) {
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "POST");
+        exchange.getIn().setHeader(Exchange.CONTENT_TYPE, "application/json");
+    }
+
+    /**
+     * Gets the custom data read by {@link FineractJsonCodec#readCustomData(String)} from the exchange.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     * @return the custom data values keyed by their key, or null if the transaction has no custom data
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> getCustomData(Exchange exchange) {
+        return (Map<String, String>) exchange.getProperty(CUSTOM_DATA, Map.class);
+    }
+
+    /**
+     * Creates the processor logging the response of a Fineract call, with its body for the sampled transactions.
+     *
+     * @param operation
+     *            the name of the Fineract operation
+     * @param isLoggingHeaders
+     *            whether the headers of the sampled responses are logged along with their body
+     * @return {@link Processor}
+     */
+    private Processor logResponse(String operation, boolean isLoggingHeaders) {
+        String responseMessage = "Received Fineract " + operation
+                + " response for transaction {} on {} with status: {}";
+        String bodyMessage = "Fineract " + operation + " response body for transaction {}: {}";
+        String headersMessage = "Fineract " + operation + " response for transaction {}: headers {}, body {}";
+        return exchange -> {
+            if (!log.isInfoEnabled()) {
+                return;
+            }
+            Message message = exchange.getIn();
+            log.info(responseMessage, exchange.getProperty(TRANSACTION_ID), message.getHeader("Date"),
+                    message.getHeader(CAMEL_HTTP_RESPONSE_CODE));
+            if (!payloadLogSampler.isSampled(exchange)) {
+                return;
+            }
+            if (isLoggingHeaders) {
+                log.info(headersMessage, exchange.getProperty(TRANSACTION_ID), message.getHeaders(),
+                        message.getBody(String.class));
+            } else {
+                log.info(bodyMessage, exchange.getProperty(TRANSACTION_ID), message.getBody(String.class));
+            }
+        };
+    }
+
+    /**
+     * Writes the request held in the exchange body as the JSON body to be sent to Fineract.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    private static void writeRequestBody(Exchange exchange) {
+        exchange.getIn().setBody(FineractJsonCodec.writeRequest(exchange.getIn().getBody()));
+    }
+
+    /**
+     * Builds the options shared by the Fineract HTTP endpoints of a tenant, all of them using the tenant's pooled
+     * connection manager. The response stream is handed over as is, without being copied into a stream cache, to be
+     * read once by the {@link FineractResponseReader}.
+     *
+     * @param tenant
+     *            {@link FineractTenant}
+     * @param timeout
+     *            the timeout in milliseconds of the calls
+     * @return the endpoint options, starting with the query separator
+     */
+    private static String getHttpEndpointOptions(FineractTenant tenant, int timeout) {
+        return "?bridgeEndpoint=true&throwExceptionOnFailure=false&disableStreamCache=true&clientConnectionManager=#"
+                + tenant.getConnectionManager() + "&" + ConnectionUtils.getConnectionTimeoutDsl(timeout);
+    }
+
+    /**
+     * Thrown inside the circuit breaker when Fineract answers with a server error status, carrying the response to the
+     * fallback.
+     */
+    @Getter
+    private static class FineractServerErrorException extends RuntimeException {
+
+        private final int status;
+        private final String body;
+
+        FineractServerErrorException(int status, String body) {
+            super("Fineract answered with status " + status);
+            this.status = status;
+            this.body = body;
+        }
     }
 }
@@ -0,0 +1,24 @@
+package org.mifos.connector.ams.fineract.data;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Holds the channel request fields used by the Fineract flows, as read by
+ * {@link org.mifos.connector.ams.fineract.util.FineractJsonCodec}.
+ *
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ChannelRequest {
+
+    private String payerIdentifier;
+    private String payeeIdentifier;
+    private String amount;
+    private String currency;
+    private boolean useWorkflowIdAsTransactionId;
+    private String workflowId;
+    private String externalId;
+}
@@ -0,0 +1,28 @@
+package org.mifos.connector.ams.fineract.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Holds the result of a single confirmation returned by the Fineract batch confirmation API.
+ *
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FineractConfirmationBatchItemResponse {
+
+    @JsonProperty("RemoteTransactionId")
+    private String remoteTransactionId;
+
+    @JsonProperty("StatusCode")
+    private Integer statusCode;
+
+    @JsonProperty("Body")
+    private JsonNode body;
+}
@@ -4,8 +4,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.json.JSONObject;
-import org.springframework.beans.BeanUtils;
 
 /**
  * Class representing the request body of Fineract confirmation API.
@@ -24,34 +22,31 @@ public class FineractConfirmationRequestDto extends FineractRequestDto {
     private String receiptId;
 
     /**
-     * Creates a {@link FineractConfirmationRequestDto} using data in the channel request.
+     * Creates a {@link FineractConfirmationRequestDto} using data in the channel request read by the JSON codec.
      *
      * @param channelRequest
-     *            contains data related to the transaction
+     *            {@link ChannelRequest}
      * @param transactionId
      *            the transaction identifier
      * @return {@link FineractConfirmationRequestDto}
      */
-    public static FineractConfirmationRequestDto fromChannelRequest(JSONObject channelRequest, String transactionId) {
+    public static FineractConfirmationRequestDto fromChannelRequest(ChannelRequest channelRequest,
+            String transactionId) {
         FineractConfirmationRequestDto dto = new FineractConfirmationRequestDto();
-
-        BeanUtils.copyProperties(FineractRequestDto.fromChannelRequest(channelRequest, transactionId, null), dto);
-
+        dto.setFieldsFromChannelRequest(channelRequest, transactionId, null);
         return dto;
     }
 
     /**
-     * Convert the paybill payload to AMS payload.
+     * Creates a {@link FineractConfirmationRequestDto} using data in the paybill payload read by the JSON codec.
      *
-     * @param payload
-     *            the JSON payload
-     * @return {@link FineractRequestDto}
+     * @param payBillRequest
+     *            {@link PayBillRequest}
+     * @return {@link FineractConfirmationRequestDto}
      */
-    public static FineractConfirmationRequestDto convertPayBillPayloadToAmsPayload(JSONObject payload) {
+    public static FineractConfirmationRequestDto fromPayBillRequest(PayBillRequest payBillRequest) {
         FineractConfirmationRequestDto dto = new FineractConfirmationRequestDto();
-
-        BeanUtils.copyProperties(FineractRequestDto.convertPayBillPayloadToAmsPayload(payload), dto);
-
+        dto.setFieldsFromPayBillRequest(payBillRequest);
         return dto;
     }
 
@@ -2,19 +2,14 @@ package org.mifos.connector.ams.fineract.data;
 
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.AMOUNT_VARIABLE_NAME;
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CURRENCY_VARIABLE_NAME;
-import static org.mifos.connector.ams.fineract.util.ConnectionUtils.convertCustomData;
-import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CUSTOM_DATA;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
-import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.springframework.util.StringUtils;
 
 /**
  * Class representing the request body of Fineract validation API.
@@ -47,103 +42,85 @@ public class FineractRequestDto {
     private boolean getAccountDetails;
 
     /**
-     * Creates a {@link FineractRequestDto} using data in the channel request.
+     * Creates a {@link FineractRequestDto} using data in the channel request read by the JSON codec.
      *
      * @param channelRequest
-     *            contains data related to the transaction
+     *            {@link ChannelRequest}
      * @param transactionId
      *            the transaction identifier
      * @param customData
-     *            holds custom data such as loanId
+     *            custom data values by lower case key, holding values such as loanId
      * @return {@link FineractRequestDto}
      */
-    public static FineractRequestDto fromChannelRequest(JSONObject channelRequest, String transactionId,
-            JSONArray customData) {
+    public static FineractRequestDto fromChannelRequest(ChannelRequest channelRequest, String transactionId,
+            Map<String, String> customData) {
         FineractRequestDto dto = new FineractRequestDto();
-
-        String phoneNumber = getPartyIdIdentifier(channelRequest, "payer");
-        String accountId = getPartyIdIdentifier(channelRequest, "payee");
-        Object amountObj = channelRequest.get(AMOUNT_VARIABLE_NAME);
-
-        if (amountObj != null) {
-            if (amountObj instanceof String amount) {
-
-                dto.setAmount(new BigDecimal(amount));
-                dto.setCurrency(String.valueOf(channelRequest.get(CURRENCY_VARIABLE_NAME)));
-            } else {
-                JSONObject amountJson = (JSONObject) amountObj;
-                dto.setAmount(new BigDecimal(amountJson.getString(AMOUNT_VARIABLE_NAME)));
-                dto.setCurrency(amountJson.getString(CURRENCY_VARIABLE_NAME));
-            }
-        }
-
-        dto.setPhoneNumber(phoneNumber);
-        dto.setAccount(accountId);
-        dto.setRemoteTransactionId(transactionId);
-        dto.setLoanIdFromCustomData(customData);
-        dto.setGetAccountDetailsFromCustomData(customData);
-
+        dto.setFieldsFromChannelRequest(channelRequest, transactionId, customData);
         return dto;
     }
 
     /**
-     * Convert the paybill payload to AMS payload.
+     * Creates a {@link FineractRequestDto} using data in the paybill payload read by the JSON codec.
      *
-     * @param payload
-     *            the JSON payload
+     * @param payBillRequest
+     *            {@link PayBillRequest}
      * @return {@link FineractRequestDto}
      */
-    public static FineractRequestDto convertPayBillPayloadToAmsPayload(JSONObject payload) {
-
-        JSONArray customData = payload.getJSONArray(CUSTOM_DATA);
-        String transactionId = convertCustomData(customData, "transactionId");
-        String currency = convertCustomData(customData, CURRENCY_VARIABLE_NAME);
-        String walletMsisdn = payload.getJSONObject("secondaryIdentifier").getString("value");
-        String accountId = payload.getJSONObject("primaryIdentifier").getString("value");
-        String amount = convertCustomData(customData, AMOUNT_VARIABLE_NAME);
-        BigDecimal amountVal = Objects.nonNull(amount) ? new BigDecimal(amount.trim()) : BigDecimal.ZERO;
-        FineractRequestDto validationRequestDto = new FineractRequestDto();
-        validationRequestDto.setAccount(accountId);
-        validationRequestDto.setAmount(amountVal);
-        validationRequestDto.setCurrency(currency);
-        validationRequestDto.setRemoteTransactionId(transactionId);
-        validationRequestDto.setPhoneNumber(walletMsisdn);
-        validationRequestDto.setLoanIdFromCustomData(customData);
-        validationRequestDto.setGetAccountDetailsFromCustomData(customData);
-        return validationRequestDto;
+    public static FineractRequestDto fromPayBillRequest(PayBillRequest payBillRequest) {
+        FineractRequestDto dto = new FineractRequestDto();
+        dto.setFieldsFromPayBillRequest(payBillRequest);
+        return dto;
     }
 
     /**
-     * Sets the loan ID to the value retrieved from custom data.
+     * Sets the fields using data in the channel request.
      *
+     * @param channelRequest
+     *            {@link ChannelRequest}
+     * @param transactionId
+     *            the transaction identifier
      * @param customData
-     *            {@link JSONArray} containing the loanId value
+     *            custom data values by lower case key, may be null
      */
-    private void setLoanIdFromCustomData(JSONArray customData) {
-        if (customData != null) {
-            String loanId = convertCustomData(customData, "loanId");
-            if (loanId != null && !loanId.isBlank()) {
-                this.loanId = Long.valueOf(loanId);
-            }
+    protected void setFieldsFromChannelRequest(ChannelRequest channelRequest, String transactionId,
+            Map<String, String> customData) {
+        if (channelRequest.getAmount() != null) {
+            this.amount = new BigDecimal(channelRequest.getAmount());
+            this.currency = channelRequest.getCurrency();
         }
+        this.phoneNumber = channelRequest.getPayerIdentifier();
+        this.account = channelRequest.getPayeeIdentifier();
+        this.remoteTransactionId = transactionId;
+        setFieldsFromCustomData(customData);
     }
 
-    private void setGetAccountDetailsFromCustomData(JSONArray customData) {
-        if (customData != null) {
-            String getAccountDetailsCustomData = convertCustomData(customData, "getAccountDetails");
-            if (StringUtils.hasText(getAccountDetailsCustomData)
-                    && List.of("true", "false").contains(getAccountDetailsCustomData)) {
-                this.getAccountDetails = Boolean.parseBoolean(getAccountDetailsCustomData);
-            }
-        }
+    /**
+     * Sets the fields using data in the paybill payload.
+     *
+     * @param payBillRequest
+     *            {@link PayBillRequest}
+     */
+    protected void setFieldsFromPayBillRequest(PayBillRequest payBillRequest) {
+        Map<String, String> customData = payBillRequest.getCustomData();
+        String amountValue = customData.get(AMOUNT_VARIABLE_NAME);
+        this.account = payBillRequest.getPrimaryIdentifier();
+        this.amount = Objects.nonNull(amountValue) ? new BigDecimal(amountValue.trim()) : BigDecimal.ZERO;
+        this.currency = customData.get(CURRENCY_VARIABLE_NAME);
+        this.remoteTransactionId = customData.get("transactionid");
+        this.phoneNumber = payBillRequest.getSecondaryIdentifier();
+        setFieldsFromCustomData(customData);
     }
 
-    private static String getPartyIdIdentifier(JSONObject party, String partyType) {
-        Object type = party.get(partyType);
-        if (type instanceof JSONArray jsonArray) {
-            return jsonArray.getJSONObject(0).getString("partyIdIdentifier");
-        } else {
-            return ((JSONObject) type).getJSONObject("partyIdInfo").getString("partyIdentifier");
+    private void setFieldsFromCustomData(Map<String, String> customData) {
+        if (customData != null) {
+            String loanIdValue = customData.get("loanid");
+            if (loanIdValue != null && !loanIdValue.isBlank()) {
+                this.loanId = Long.valueOf(loanIdValue);
+            }
+            String getAccountDetailsValue = customData.get("getaccountdetails");
+            if ("true".equals(getAccountDetailsValue) || "false".equals(getAccountDetailsValue)) {
+                this.getAccountDetails = Boolean.parseBoolean(getAccountDetailsValue);
+            }
         }
     }
 
@@ -0,0 +1,21 @@
+package org.mifos.connector.ams.fineract.data;
+
+import java.util.Map;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Holds the paybill payload fields used by the Fineract flows, as read by
+ * {@link org.mifos.connector.ams.fineract.util.FineractJsonCodec}.
+ *
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class PayBillRequest {
+
+    private String primaryIdentifier;
+    private String secondaryIdentifier;
+    private Map<String, String> customData;
+}
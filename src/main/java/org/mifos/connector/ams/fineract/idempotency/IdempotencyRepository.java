@@ -0,0 +1,30 @@
+package org.mifos.connector.ams.fineract.idempotency;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores the results of completed operations so that duplicates can be answered without calling Fineract again.
+ * Implementations backed by a shared store allow the results to be replayed across replicas.
+ */
+public interface IdempotencyRepository {
+
+    /**
+     * Finds the recorded result of an operation.
+     *
+     * @param key
+     *            the operation key
+     * @return the recorded variables, or empty if the operation has not been recorded or the record has expired
+     */
+    Optional<Map<String, Object>> find(String key);
+
+    /**
+     * Records the result of an operation for the retention window.
+     *
+     * @param key
+     *            the operation key
+     * @param result
+     *            the variables resulting from the operation
+     */
+    void save(String key, Map<String, Object> result);
+}
@@ -0,0 +1,89 @@
+package org.mifos.connector.ams.fineract.idempotency;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * De-duplicates operations sent to Fineract for the same transaction.
+ *
+ * <p>
+ * Concurrent duplicates share the result of the single in-flight call. Successful results are recorded in the
+ * {@link IdempotencyRepository} and replayed to later duplicates within the retention window, while failed results are
+ * not recorded so that retries still reach Fineract.
+ */
+@Slf4j
+@Component
+public class IdempotentOperationExecutor {
+
+    private final IdempotencyRepository repository;
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${ams.idempotency.enabled}")
+    private boolean isIdempotencyEnabled;
+
+    public IdempotentOperationExecutor(IdempotencyRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Executes the operation unless a duplicate is in flight or has been recorded.
+     *
+     * @param operation
+     *            the operation name
+     * @param transactionId
+     *            the transaction identifier
+     * @param call
+     *            starts the operation, its future never completing exceptionally
+     * @param isSuccessful
+     *            tells if a result can be recorded
+     * @return the future completed with the variables resulting from the operation
+     */
+    public CompletableFuture<Map<String, Object>> execute(String operation, String transactionId,
+            Supplier<CompletableFuture<Map<String, Object>>> call, Predicate<Map<String, Object>> isSuccessful) {
+        if (!isIdempotencyEnabled || transactionId == null) {
+            return call.get();
+        }
+
+        String key = operation + ":" + transactionId;
+        Optional<Map<String, Object>> recorded = repository.find(key);
+        if (recorded.isPresent()) {
+            log.info("Replaying recorded {} result for transaction {}", operation, transactionId);
+            return CompletableFuture.completedFuture(recorded.get());
+        }
+
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            log.info("Joining in-flight {} call for transaction {}", operation, transactionId);
+            return existing;
+        }
+        // A call completing between the first lookup and the putIfAbsent is recorded before leaving the in-flight map
+        recorded = repository.find(key);
+        if (recorded.isPresent()) {
+            inFlight.remove(key);
+            log.info("Replaying recorded {} result for transaction {}", operation, transactionId);
+            result.complete(recorded.get());
+            return result;
+        }
+
+        call.get().whenComplete((variables, throwable) -> {
+            if (throwable == null && isSuccessful.test(variables)) {
+                repository.save(key, variables);
+            }
+            inFlight.remove(key);
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(variables);
+            }
+        });
+        return result;
+    }
+}
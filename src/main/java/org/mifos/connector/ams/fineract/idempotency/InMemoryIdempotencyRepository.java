@@ -0,0 +1,36 @@
+package org.mifos.connector.ams.fineract.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/** {@link IdempotencyRepository} keeping the recorded results in memory, local to the replica. */
+@Component
+@ConditionalOnProperty(name = "ams.idempotency.repository", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyRepository implements IdempotencyRepository {
+
+    private final Cache<String, Map<String, Object>> results;
+
+    public InMemoryIdempotencyRepository(@Value("${ams.idempotency.retention}") long retentionMs,
+            @Value("${ams.idempotency.max-size}") long maxSize) {
+        this.results = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(retentionMs)).maximumSize(maxSize)
+                .build();
+    }
+
+    @Override
+    public Optional<Map<String, Object>> find(String key) {
+        return Optional.ofNullable(results.getIfPresent(key));
+    }
+
+    @Override
+    public void save(String key, Map<String, Object> result) {
+        results.put(key, Collections.unmodifiableMap(new HashMap<>(result)));
+    }
+}
@@ -0,0 +1,218 @@
+package org.mifos.connector.ams.fineract.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.mifos.connector.ams.fineract.outbox.SettlementOutbox;
+import org.mifos.connector.ams.fineract.zeebe.AdaptiveConcurrencyLimit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the connector metrics: Zeebe jobs and worker concurrency limits, Fineract calls, paybill validations and the
+ * settlement outbox. Percentiles and histograms are configured through the management.metrics.distribution properties.
+ */
+@Component
+public class ConnectorMetrics {
+
+    public static final String ZEEBE_JOB_TIMER = "ams.zeebe.job";
+    public static final String ZEEBE_JOBS_IN_FLIGHT_GAUGE = "ams.zeebe.jobs.in.flight";
+    public static final String WORKER_CONCURRENCY_LIMIT_GAUGE = "ams.zeebe.worker.concurrency.limit";
+    public static final String WORKER_CONCURRENCY_LIMIT_DECREASES = "ams.zeebe.worker.concurrency.limit.decreases";
+    public static final String ZEEBE_JOB_COMMANDS_COUNTER = "ams.zeebe.job.commands";
+    public static final String ZEEBE_JOB_COMMANDS_PENDING_GAUGE = "ams.zeebe.job.commands.pending";
+    public static final String FINERACT_REQUEST_TIMER = "ams.fineract.request";
+    public static final String FINERACT_THROTTLED_COUNTER = "ams.fineract.request.throttled";
+    public static final String FINERACT_RATE_LIMIT_WAIT_TIMER = "ams.fineract.request.rate.limit.wait";
+    public static final String FINERACT_CLIENT_DETAILS_LATENCY_TIMER = "ams.fineract.client.details.latency";
+    public static final String FINERACT_CLIENT_DETAILS_HEDGES_COUNTER = "ams.fineract.client.details.hedges";
+    public static final String PAYBILL_VALIDATION_TIMER = "ams.paybill.validation";
+    public static final String SETTLEMENT_OUTBOX_PENDING_GAUGE = "ams.settlement.outbox.pending";
+    public static final String SETTLEMENT_OUTBOX_REPLAYS_COUNTER = "ams.settlement.outbox.replays";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> jobsInFlight = new ConcurrentHashMap<>();
+
+    public ConnectorMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Marks a job as in flight and starts timing it.
+     *
+     * @param jobType
+     *            the job type
+     * @return the sample to be stopped once the job is completed
+     */
+    public Timer.Sample jobStarted(String jobType) {
+        jobsInFlight(jobType).incrementAndGet();
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records the latency and outcome of a job.
+     *
+     * @param jobType
+     *            the job type
+     * @param sample
+     *            the sample started when the job was received
+     * @param isFailed
+     *            whether the job operation failed
+     * @return the job latency in nanoseconds
+     */
+    public long jobCompleted(String jobType, Timer.Sample sample, boolean isFailed) {
+        jobsInFlight(jobType).decrementAndGet();
+        return sample.stop(meterRegistry.timer(ZEEBE_JOB_TIMER, "type", jobType, "outcome", outcome(!isFailed)));
+    }
+
+    /**
+     * Exposes the current value and the decreases of a worker's concurrency limit.
+     *
+     * @param jobType
+     *            the job type of the worker
+     * @param limit
+     *            {@link AdaptiveConcurrencyLimit}
+     */
+    public void registerConcurrencyLimit(String jobType, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder(WORKER_CONCURRENCY_LIMIT_GAUGE, limit, AdaptiveConcurrencyLimit::getLimit).tag("type", jobType)
+                .register(meterRegistry);
+        FunctionCounter.builder(WORKER_CONCURRENCY_LIMIT_DECREASES, limit, AdaptiveConcurrencyLimit::getDecreases)
+                .tag("type", jobType).register(meterRegistry);
+    }
+
+    /**
+     * Exposes the number of job commands sent and not yet acknowledged by the broker.
+     *
+     * @param pendingCommands
+     *            the pending commands count
+     */
+    public void registerPendingJobCommands(AtomicInteger pendingCommands) {
+        meterRegistry.gauge(ZEEBE_JOB_COMMANDS_PENDING_GAUGE, pendingCommands);
+    }
+
+    /**
+     * Records the outcome of a job command once it is acknowledged or can no longer be resent.
+     *
+     * @param command
+     *            the command, complete or fail
+     * @param isSuccessful
+     *            whether the command was acknowledged by the broker
+     */
+    public void jobCommandCompleted(String command, boolean isSuccessful) {
+        meterRegistry.counter(ZEEBE_JOB_COMMANDS_COUNTER, "command", command, "outcome", outcome(isSuccessful))
+                .increment();
+    }
+
+    /**
+     * Records the latency of a Fineract call.
+     *
+     * @param endpoint
+     *            the Fineract endpoint name
+     * @param tenant
+     *            the tenant id
+     * @param status
+     *            the HTTP status of the response
+     * @param durationNanos
+     *            the call duration in nanoseconds
+     */
+    public void fineractCallCompleted(String endpoint, String tenant, Object status, long durationNanos) {
+        meterRegistry.timer(FINERACT_REQUEST_TIMER, "endpoint", endpoint, "tenant", tenant, "status",
+                String.valueOf(status)).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a Fineract call that was not made because a rate limit was reached.
+     *
+     * @param endpoint
+     *            the Fineract endpoint name
+     * @param tenant
+     *            the tenant id
+     * @param limit
+     *            the rate limit that was reached, either tenant or endpoint
+     */
+    public void fineractCallThrottled(String endpoint, String tenant, String limit) {
+        meterRegistry.counter(FINERACT_THROTTLED_COUNTER, "endpoint", endpoint, "tenant", tenant, "limit", limit)
+                .increment();
+    }
+
+    /**
+     * Records the time a Fineract call waited for the rate limit of its endpoint.
+     *
+     * @param endpoint
+     *            the Fineract endpoint name
+     * @param waitNanos
+     *            the wait in nanoseconds, 0 when a permit was available right away
+     */
+    public void fineractCallQueued(String endpoint, long waitNanos) {
+        meterRegistry.timer(FINERACT_RATE_LIMIT_WAIT_TIMER, "endpoint", endpoint).record(waitNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers the timer of the client details calls, publishing the p95 latency that delays the hedged calls.
+     *
+     * @return {@link Timer}
+     */
+    public Timer registerClientDetailsLatency() {
+        return Timer.builder(FINERACT_CLIENT_DETAILS_LATENCY_TIMER).publishPercentiles(0.95).register(meterRegistry);
+    }
+
+    /**
+     * Counts the client details lookups that were slow enough to be hedged.
+     *
+     * @param outcome
+     *            the hedge outcome: won or lost against the first call, or skipped when over the hedge budget
+     */
+    public void clientDetailsLookupHedged(String outcome) {
+        meterRegistry.counter(FINERACT_CLIENT_DETAILS_HEDGES_COUNTER, "outcome", outcome).increment();
+    }
+
+    /**
+     * Records the latency and outcome of a paybill validation.
+     *
+     * @param tenant
+     *            the tenant id
+     * @param isReconciled
+     *            whether the paybill was reconciled
+     * @param durationNanos
+     *            the validation duration in nanoseconds
+     */
+    public void paybillValidationCompleted(String tenant, boolean isReconciled, long durationNanos) {
+        meterRegistry.timer(PAYBILL_VALIDATION_TIMER, "tenant", tenant, "outcome", outcome(isReconciled))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Exposes the number of confirmations waiting in the settlement outbox.
+     *
+     * @param outbox
+     *            {@link SettlementOutbox}
+     */
+    public void registerSettlementOutbox(SettlementOutbox outbox) {
+        Gauge.builder(SETTLEMENT_OUTBOX_PENDING_GAUGE, outbox, SettlementOutbox::getPending).register(meterRegistry);
+    }
+
+    /**
+     * Counts the replays of the confirmations held in the settlement outbox.
+     *
+     * @param outcome
+     *            the replay outcome: success, rejected by Fineract or retry
+     */
+    public void settlementOutboxReplayed(String outcome) {
+        meterRegistry.counter(SETTLEMENT_OUTBOX_REPLAYS_COUNTER, "outcome", outcome).increment();
+    }
+
+    private AtomicInteger jobsInFlight(String jobType) {
+        return jobsInFlight.computeIfAbsent(jobType,
+                type -> meterRegistry.gauge(ZEEBE_JOBS_IN_FLIGHT_GAUGE, Tags.of("type", type), new AtomicInteger()));
+    }
+
+    private static String outcome(boolean isSuccessful) {
+        return isSuccessful ? "success" : "failure";
+    }
+}
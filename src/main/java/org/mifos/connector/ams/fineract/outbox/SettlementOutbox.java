@@ -0,0 +1,345 @@
+package org.mifos.connector.ams.fineract.outbox;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CAMEL_HTTP_RESPONSE_CODE;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.ERROR_CODE;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationBatchItemResponse;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
+import org.mifos.connector.ams.fineract.util.ConnectionUtils;
+import org.mifos.connector.ams.fineract.util.FineractJsonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Durable outbox of the Fineract confirmations that failed because Fineract was unavailable. The money has already
+ * moved at the MNO, so instead of failing the settlement the confirmation is written to a local append-only log and
+ * replayed in the background until Fineract accepts or rejects it.
+ *
+ * <p>
+ * The confirmations of the same account are replayed one at a time in the order they were added, so that a later
+ * confirmation never overtakes an earlier one. Each drain round replays up to the batch size of confirmations, bounded
+ * by the max in flight, through the confirmation route of their tenant. When settlement batching is enabled, the
+ * confirmations of a tenant due in the same round are replayed in a single batch confirmation call, falling back to one
+ * call per confirmation when the batch call is answered with a client error. A replay failing because Fineract is still
+ * unavailable is retried with an exponential backoff, while a confirmation rejected by Fineract is dropped and logged
+ * for reconciliation.
+ */
+@Slf4j
+@Component
+public class SettlementOutbox {
+
+    private final CamelContext camelContext;
+    private final ProducerTemplate producerTemplate;
+    private final ObjectMapper objectMapper;
+    private final ConnectorMetrics connectorMetrics;
+
+    @Value("${ams.outbox.enabled}")
+    private boolean isOutboxEnabled;
+
+    @Value("${ams.outbox.directory}")
+    private String directory;
+
+    @Value("${ams.outbox.fsync}")
+    private boolean isFsyncEnabled;
+
+    // Delay in milliseconds between two drain rounds
+    @Value("${ams.outbox.poll-interval}")
+    private long pollInterval;
+
+    @Value("${ams.outbox.batch-size}")
+    private int batchSize;
+
+    @Value("${ams.outbox.max-in-flight}")
+    private int maxInFlight;
+
+    // The outbox uses the batch confirmation endpoint when the settlements are batched
+    @Value("${fineract.batch.settlement.enabled:false}")
+    private boolean isBatchReplayEnabled;
+
+    // Backoff in milliseconds before the first replay, doubled on each attempt
+    @Value("${ams.outbox.initial-backoff}")
+    private long initialBackoff;
+
+    @Value("${ams.outbox.max-backoff}")
+    private long maxBackoff;
+
+    // Number of done entries after which the log is rewritten with the pending entries only
+    @Value("${ams.outbox.compaction-threshold}")
+    private long compactionThreshold;
+
+    // Pending entries by tenant and account, the accounts in the order of their oldest entry
+    private final Map<String, Deque<SettlementOutboxEntry>> queues = new LinkedHashMap<>();
+    private SettlementOutboxLog outboxLog;
+    private long nextId;
+    private int pending;
+    private int inFlight;
+    private ScheduledExecutorService drainScheduler;
+    private ExecutorService replayExecutor;
+
+    public SettlementOutbox(CamelContext camelContext, ProducerTemplate producerTemplate, ObjectMapper objectMapper,
+            ConnectorMetrics connectorMetrics) {
+        this.camelContext = camelContext;
+        this.producerTemplate = producerTemplate;
+        this.objectMapper = objectMapper;
+        this.connectorMetrics = connectorMetrics;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!isOutboxEnabled) {
+            return;
+        }
+        outboxLog = new SettlementOutboxLog(Path.of(directory), objectMapper, isFsyncEnabled);
+        synchronized (this) {
+            for (SettlementOutboxEntry entry : outboxLog.load()) {
+                enqueue(entry);
+                nextId = Math.max(nextId, entry.getId() + 1);
+            }
+            log.info("Loaded {} pending confirmations from the settlement outbox", pending);
+        }
+        connectorMetrics.registerSettlementOutbox(this);
+        drainScheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                "SettlementOutboxDrain");
+        replayExecutor = camelContext.getExecutorServiceManager().newFixedThreadPool(this, "SettlementOutboxReplay",
+                maxInFlight);
+        drainScheduler.scheduleWithFixedDelay(this::drain, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        if (!isOutboxEnabled) {
+            return;
+        }
+        camelContext.getExecutorServiceManager().shutdown(drainScheduler);
+        camelContext.getExecutorServiceManager().shutdownGraceful(replayExecutor);
+        synchronized (this) {
+            outboxLog.close();
+        }
+    }
+
+    /**
+     * Adds a failed confirmation to the outbox when the outbox is enabled and the confirmation failed because Fineract
+     * is unavailable. The confirmation is on disk once this method returns.
+     *
+     * @param exchange
+     *            the exchange of the failed confirmation, holding its error code or HTTP status
+     * @param tenant
+     *            the tenant id
+     * @param request
+     *            {@link FineractConfirmationRequestDto}
+     * @return true if the confirmation was added and will be replayed
+     */
+    public boolean offer(Exchange exchange, String tenant, FineractConfirmationRequestDto request) {
+        if (!isOutboxEnabled || request == null || !isFineractUnavailable(exchange)) {
+            return false;
+        }
+        String requestJson = new String(FineractJsonCodec.writeRequest(request), StandardCharsets.UTF_8);
+        synchronized (this) {
+            SettlementOutboxEntry entry = new SettlementOutboxEntry(nextId++, tenant, request.getAccount(),
+                    request.getRemoteTransactionId(), requestJson);
+            try {
+                outboxLog.add(entry);
+            } catch (IOException e) {
+                log.error("Failed to add the confirmation of transaction {} to the settlement outbox: {}",
+                        request.getRemoteTransactionId(), e.getMessage());
+                return false;
+            }
+            enqueue(entry);
+        }
+        log.warn("Confirmation of transaction {} added to the settlement outbox", request.getRemoteTransactionId());
+        return true;
+    }
+
+    /**
+     * @return the number of confirmations waiting to be replayed
+     */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    private void drain() {
+        List<SettlementOutboxEntry> due = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Deque<SettlementOutboxEntry> queue : queues.values()) {
+                if (due.size() >= batchSize || inFlight >= maxInFlight) {
+                    break;
+                }
+                SettlementOutboxEntry head = queue.peekFirst();
+                if (!head.isInFlight() && head.getNextAttemptNanos() - now <= 0) {
+                    head.setInFlight(true);
+                    inFlight++;
+                    due.add(head);
+                }
+            }
+        }
+        if (!isBatchReplayEnabled) {
+            due.forEach(entry -> replayExecutor.execute(() -> replay(entry)));
+            return;
+        }
+        for (List<SettlementOutboxEntry> batch : due.stream()
+                .collect(Collectors.groupingBy(SettlementOutboxEntry::getTenant, LinkedHashMap::new,
+                        Collectors.toList()))
+                .values()) {
+            replayExecutor.execute(() -> {
+                if (batch.size() > 1) {
+                    replayBatch(batch);
+                } else {
+                    replay(batch.get(0));
+                }
+            });
+        }
+    }
+
+    private void replayBatch(List<SettlementOutboxEntry> batch) {
+        String requests = batch.stream().map(SettlementOutboxEntry::getRequest).collect(Collectors.joining(",", "[",
+                "]"));
+        Exchange response = producerTemplate.send("direct:fineract-confirmation-batch", exchange -> {
+            exchange.setProperty(FINERACT_TENANT, batch.get(0).getTenant());
+            exchange.getIn().setHeader(Exchange.HTTP_METHOD, "POST");
+            exchange.getIn().setHeader("Content-Type", "application/json");
+            exchange.getIn().setBody(requests);
+        });
+        Integer statusCode = response.getIn().getHeader(CAMEL_HTTP_RESPONSE_CODE, Integer.class);
+        if (response.getException() != null || isFineractUnavailable(response)) {
+            batch.forEach(this::retry);
+            return;
+        }
+        if (statusCode != 200) {
+            log.warn("Batch replay of {} confirmations answered with status {}, replaying them one by one",
+                    batch.size(), statusCode);
+            batch.forEach(this::replay);
+            return;
+        }
+
+        Map<String, FineractConfirmationBatchItemResponse> results = new HashMap<>();
+        try {
+            for (FineractConfirmationBatchItemResponse item : objectMapper
+                    .readValue(response.getIn().getBody(String.class), FineractConfirmationBatchItemResponse[].class)) {
+                results.put(item.getRemoteTransactionId(), item);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read the batch replay response: {}", e.getMessage());
+        }
+        for (SettlementOutboxEntry entry : batch) {
+            FineractConfirmationBatchItemResponse result = results.get(entry.getTransactionId());
+            Integer itemStatusCode = result != null ? result.getStatusCode() : null;
+            if (itemStatusCode != null && itemStatusCode == 200) {
+                log.info("Replayed the confirmation of transaction {} from the settlement outbox",
+                        entry.getTransactionId());
+                complete(entry, "success");
+            } else if (itemStatusCode != null && !ConnectionUtils.isFineractUnavailable(itemStatusCode)) {
+                log.error("Fineract rejected the replayed confirmation of transaction {} with status {}: {}",
+                        entry.getTransactionId(), itemStatusCode, entry.getRequest());
+                complete(entry, "rejected");
+            } else {
+                retry(entry);
+            }
+        }
+    }
+
+    private void replay(SettlementOutboxEntry entry) {
+        Exchange response = producerTemplate.send("direct:fineract-confirmation", exchange -> {
+            exchange.setProperty(FINERACT_TENANT, entry.getTenant());
+            exchange.setProperty(TRANSACTION_ID, entry.getTransactionId());
+            exchange.getIn().setHeader(Exchange.HTTP_METHOD, "POST");
+            exchange.getIn().setHeader("Content-Type", "application/json");
+            exchange.getIn().setBody(entry.getRequest());
+        });
+        Integer statusCode = response.getIn().getHeader(CAMEL_HTTP_RESPONSE_CODE, Integer.class);
+        if (response.getException() == null && statusCode != null && statusCode == 200) {
+            log.info("Replayed the confirmation of transaction {} from the settlement outbox",
+                    entry.getTransactionId());
+            complete(entry, "success");
+        } else if (response.getException() == null && !isFineractUnavailable(response)) {
+            log.error("Fineract rejected the replayed confirmation of transaction {} with status {}: {}",
+                    entry.getTransactionId(), statusCode, entry.getRequest());
+            complete(entry, "rejected");
+        } else {
+            retry(entry);
+        }
+    }
+
+    private synchronized void complete(SettlementOutboxEntry entry, String outcome) {
+        connectorMetrics.settlementOutboxReplayed(outcome);
+        try {
+            outboxLog.done(entry.getId());
+        } catch (IOException e) {
+            // The confirmation is replayed again after a restart
+            log.error("Failed to remove the confirmation of transaction {} from the settlement outbox: {}",
+                    entry.getTransactionId(), e.getMessage());
+        }
+        String queueKey = queueKey(entry);
+        Deque<SettlementOutboxEntry> queue = queues.get(queueKey);
+        queue.removeFirst();
+        if (queue.isEmpty()) {
+            queues.remove(queueKey);
+        }
+        pending--;
+        inFlight--;
+
+        if (outboxLog.getDoneRecords() >= compactionThreshold) {
+            try {
+                outboxLog.compact(queues.values().stream().flatMap(Deque::stream).toList());
+            } catch (IOException e) {
+                log.error("Failed to compact the settlement outbox: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void retry(SettlementOutboxEntry entry) {
+        connectorMetrics.settlementOutboxReplayed("retry");
+        int attempts = entry.getAttempts() + 1;
+        long backoff = Math.min(maxBackoff, initialBackoff << Math.min(attempts - 1, 30));
+        log.warn("Replay {} of the confirmation of transaction {} failed, retrying in {}ms", attempts,
+                entry.getTransactionId(), backoff);
+        entry.setAttempts(attempts);
+        entry.setNextAttemptNanos(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff));
+        entry.setInFlight(false);
+        inFlight--;
+    }
+
+    private void enqueue(SettlementOutboxEntry entry) {
+        entry.setNextAttemptNanos(System.nanoTime());
+        queues.computeIfAbsent(queueKey(entry), key -> new ArrayDeque<>()).addLast(entry);
+        pending++;
+    }
+
+    private static String queueKey(SettlementOutboxEntry entry) {
+        return entry.getTenant() + ":" + Objects.toString(entry.getAccount(), entry.getTransactionId());
+    }
+
+    private static boolean isFineractUnavailable(Exchange exchange) {
+        Object errorCode = exchange.getProperty(ERROR_CODE);
+        if (errorCode == null) {
+            errorCode = exchange.getIn().getHeader(CAMEL_HTTP_RESPONSE_CODE);
+        }
+        // No status means that the call did not get an answer
+        return errorCode == null || ConnectionUtils.isFineractUnavailable(errorCode);
+    }
+}
@@ -0,0 +1,31 @@
+package org.mifos.connector.ams.fineract.outbox;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A confirmation waiting in the settlement outbox, with its replay state. Only the confirmation itself is persisted,
+ * the replay state starting over when the connector restarts.
+ */
+@Getter
+@Setter
+class SettlementOutboxEntry {
+
+    private final long id;
+    private final String tenant;
+    private final String account;
+    private final String transactionId;
+    // The confirmation request, as sent to Fineract
+    private final String request;
+    private int attempts;
+    private long nextAttemptNanos;
+    private boolean isInFlight;
+
+    SettlementOutboxEntry(long id, String tenant, String account, String transactionId, String request) {
+        this.id = id;
+        this.tenant = tenant;
+        this.account = account;
+        this.transactionId = transactionId;
+        this.request = request;
+    }
+}
@@ -0,0 +1,207 @@
+package org.mifos.connector.ams.fineract.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log of the settlement outbox, made of one JSON record per line. An entry is added by an ADD record and
+ * removed by a DONE record, so the pending entries are rebuilt by replaying the log. The log is rewritten with the
+ * pending entries only once enough entries are done.
+ *
+ * <p>
+ * Not thread safe, the outbox serializing the calls.
+ */
+@Slf4j
+class SettlementOutboxLog implements AutoCloseable {
+
+    private static final String LOG_FILE = "settlements.log";
+    private static final String COMPACTED_LOG_FILE = "settlements.log.compacted";
+
+    private final Path file;
+    private final Path compactedFile;
+    private final ObjectMapper objectMapper;
+    private final boolean isFsyncEnabled;
+    private FileChannel channel;
+    private long doneRecords;
+
+    /**
+     * Opens the log in the given directory, creating it if needed.
+     *
+     * @param directory
+     *            the directory holding the log
+     * @param objectMapper
+     *            {@link ObjectMapper}
+     * @param isFsyncEnabled
+     *            whether each record is flushed to the disk before being acknowledged
+     * @throws IOException
+     *             if the log can't be opened
+     */
+    SettlementOutboxLog(Path directory, ObjectMapper objectMapper, boolean isFsyncEnabled) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(LOG_FILE);
+        this.compactedFile = directory.resolve(COMPACTED_LOG_FILE);
+        this.objectMapper = objectMapper;
+        this.isFsyncEnabled = isFsyncEnabled;
+        this.channel = open(file);
+    }
+
+    /**
+     * Reads the entries added and not done yet, in the order they were added. A last record partially written, when the
+     * connector stopped while appending it, is cut off the log first, so that the next record is not appended to it.
+     *
+     * @return the pending entries
+     * @throws IOException
+     *             if the log can't be read
+     */
+    List<SettlementOutboxEntry> load() throws IOException {
+        truncateTornRecord();
+        Map<Long, SettlementOutboxEntry> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                SettlementOutboxRecord record;
+                try {
+                    record = objectMapper.readValue(line, SettlementOutboxRecord.class);
+                } catch (IOException e) {
+                    // Records are whole lines once the torn last record is cut off, so a line is only unreadable if the
+                    // log was altered
+                    log.warn("Skipping unreadable settlement outbox record: {}", e.getMessage());
+                    continue;
+                }
+                if (SettlementOutboxRecord.ADD.equals(record.type())) {
+                    pending.put(record.id(), new SettlementOutboxEntry(record.id(), record.tenant(), record.account(),
+                            record.transactionId(), record.request()));
+                } else {
+                    pending.remove(record.id());
+                    doneRecords++;
+                }
+            }
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Appends the ADD record of an entry.
+     *
+     * @param entry
+     *            {@link SettlementOutboxEntry}
+     * @throws IOException
+     *             if the record can't be written
+     */
+    void add(SettlementOutboxEntry entry) throws IOException {
+        append(new SettlementOutboxRecord(SettlementOutboxRecord.ADD, entry.getId(), entry.getTenant(),
+                entry.getAccount(), entry.getTransactionId(), entry.getRequest()));
+    }
+
+    /**
+     * Appends the DONE record of an entry.
+     *
+     * @param id
+     *            the entry id
+     * @throws IOException
+     *             if the record can't be written
+     */
+    void done(long id) throws IOException {
+        append(new SettlementOutboxRecord(SettlementOutboxRecord.DONE, id, null, null, null, null));
+        doneRecords++;
+    }
+
+    /**
+     * @return the number of DONE records in the log
+     */
+    long getDoneRecords() {
+        return doneRecords;
+    }
+
+    /**
+     * Rewrites the log with the pending entries only. The new log is written aside and then moved over the current one,
+     * so that a crash while compacting leaves one of them complete.
+     *
+     * @param pending
+     *            the pending entries
+     * @throws IOException
+     *             if the log can't be rewritten
+     */
+    void compact(Collection<SettlementOutboxEntry> pending) throws IOException {
+        try (FileChannel compacted = FileChannel.open(compactedFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (SettlementOutboxEntry entry : pending) {
+                write(compacted, new SettlementOutboxRecord(SettlementOutboxRecord.ADD, entry.getId(),
+                        entry.getTenant(), entry.getAccount(), entry.getTransactionId(), entry.getRequest()));
+            }
+            compacted.force(true);
+        }
+        channel.close();
+        Files.move(compactedFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+        doneRecords = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Cuts the log back to the end of its last complete record.
+     *
+     * @throws IOException
+     *             if the log can't be truncated
+     */
+    private void truncateTornRecord() throws IOException {
+        long size = channel.size();
+        long end = size;
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (end > 0) {
+                lastByte.clear();
+                reader.read(lastByte, end - 1);
+                if (lastByte.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+        }
+        if (end < size) {
+            log.warn("Cutting off the {} bytes of a partially written settlement outbox record", size - end);
+            channel.truncate(end);
+            channel.force(true);
+        }
+    }
+
+    private void append(SettlementOutboxRecord record) throws IOException {
+        write(channel, record);
+        if (isFsyncEnabled) {
+            channel.force(false);
+        }
+    }
+
+    private void write(FileChannel target, SettlementOutboxRecord record) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(record);
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,27 @@
+package org.mifos.connector.ams.fineract.outbox;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A line of the {@link SettlementOutboxLog}.
+ *
+ * @param type
+ *            ADD when the entry is added to the outbox, DONE when it is removed
+ * @param id
+ *            the entry id
+ * @param tenant
+ *            the tenant id, only set on ADD records
+ * @param account
+ *            the account of the confirmation, only set on ADD records
+ * @param transactionId
+ *            the transaction id, only set on ADD records
+ * @param request
+ *            the JSON confirmation request, only set on ADD records
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record SettlementOutboxRecord(String type, long id, String tenant, String account, String transactionId,
+        String request) {
+
+    static final String ADD = "ADD";
+    static final String DONE = "DONE";
+}
@@ -0,0 +1,116 @@
+package org.mifos.connector.ams.fineract.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter. The bucket is refilled at the configured rate up to its capacity, so that calls can burst
+ * up to the capacity after an idle period while their average rate is bounded by the refill rate.
+ */
+public class TokenBucket {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param permitsPerSecond
+     *            the refill rate
+     * @param capacity
+     *            the max number of tokens held, which is the largest burst allowed
+     */
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int capacity, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid token bucket rate " + permitsPerSecond + " or capacity " + capacity);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = capacity;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a token if one is available, without waiting.
+     *
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            refill(nanoClock.getAsLong());
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves a token if it is available within the max wait. A reserved token is taken ahead of the refill, so the
+     * caller must wait for the returned time before making its call.
+     *
+     * @param maxWaitNanos
+     *            the longest time the caller accepts to wait for a token
+     * @return the time to wait for the reserved token in nanoseconds, or -1 if no token is available within the max
+     *         wait, in which case nothing is reserved
+     */
+    public long reserve(long maxWaitNanos) {
+        lock.lock();
+        try {
+            refill(nanoClock.getAsLong());
+            long waitNanos = 0;
+            if (tokens < 1) {
+                waitNanos = (long) Math.ceil((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+                if (waitNanos > maxWaitNanos) {
+                    return -1;
+                }
+            }
+            // Tokens go below zero while reservations wait for the refill, so later callers wait behind them
+            tokens--;
+            return waitNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a token taken for a call that was not made, up to the capacity.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            tokens = Math.min(capacity, tokens + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the refill rate
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    private void refill(long now) {
+        double elapsedSeconds = (double) (now - lastRefillNanos) / TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(capacity, tokens + elapsedSeconds * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,45 @@
+package org.mifos.connector.ams.fineract.tenant;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.mifos.connector.ams.fineract.ratelimit.TokenBucket;
+
+/**
+ * A Fineract tenant, with its own endpoints, connection pool and rate limit.
+ */
+@Getter
+@AllArgsConstructor
+public class FineractTenant {
+
+    private final String id;
+    private final String platformTenantId;
+    private final String validationUrl;
+    private final String confirmationUrl;
+    private final String clientDetailsUrl;
+    private final String confirmationBatchUrl;
+    // Name of the connection manager in the Camel registry
+    private final String connectionManager;
+    // Connection pool sizes, for all the Fineract hosts of the tenant and for each of them
+    private final int maxTotalConnections;
+    private final int maxConnectionsPerRoute;
+    // Null when the tenant's calls are not rate limited
+    private final TokenBucket rateLimiter;
+
+    /**
+     * Takes a permit for a Fineract call of the tenant, without waiting.
+     *
+     * @return true if the call can be made
+     */
+    public boolean tryAcquire() {
+        return rateLimiter == null || rateLimiter.tryAcquire();
+    }
+
+    /**
+     * Gives back a permit taken for a call that was not made.
+     */
+    public void release() {
+        if (rateLimiter != null) {
+            rateLimiter.release();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.mifos.connector.ams.fineract.tenant;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tenants served by the connector, configured under fineract.tenants and keyed by tenant id. Values that are not set
+ * for a tenant fall back to the fineract ones, which also configure the default tenant.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "fineract.tenants")
+public class FineractTenantProperties {
+
+    // Tenant of the transactions that are not mapped to any other tenant
+    private String defaultTenant = "default";
+
+    private Map<String, Tenant> instances = new LinkedHashMap<>();
+
+    /** Properties of a tenant. */
+    @Getter
+    @Setter
+    public static class Tenant {
+
+        // Value of the fineract-platform-tenantid header, the tenant id when not set
+        private String platformTenantId;
+
+        // Account holding institution ids of the transactions routed to the tenant, besides the tenant id itself
+        private List<String> institutionIds = new ArrayList<>();
+
+        private String baseUrl;
+
+        private Endpoint endpoint = new Endpoint();
+
+        private Integer maxTotalConnections;
+
+        private Integer maxConnectionsPerRoute;
+
+        // Fineract calls per second allowed for the tenant, not limited when not set
+        private Double rateLimit;
+
+        // Calls allowed at once after an idle period, the rate limit rounded up when not set
+        private Integer rateLimitBurst;
+    }
+
+    /** Fineract endpoints of a tenant. */
+    @Getter
+    @Setter
+    public static class Endpoint {
+
+        private String validation;
+
+        private String confirmation;
+
+        private String clientDetails;
+
+        private String confirmationBatch;
+    }
+}
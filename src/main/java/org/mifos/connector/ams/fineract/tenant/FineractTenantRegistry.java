@@ -0,0 +1,196 @@
+package org.mifos.connector.ams.fineract.tenant;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+import static org.mifos.connector.ams.fineract.camel.config.FineractHttpClientConfig.FINERACT_CONNECTION_MANAGER;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TENANT_ID;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.mifos.connector.ams.fineract.camel.config.FineractHttpClientConfig;
+import org.mifos.connector.ams.fineract.ratelimit.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the tenants served by the connector and resolves the tenant of each transaction.
+ *
+ * <p>
+ * A transaction is routed to the tenant its account holding institution is mapped to, otherwise to the tenant named by
+ * its tenant id, otherwise to the default tenant. The default tenant uses the shared Fineract connection pool while
+ * each other tenant gets its own pool, so that a slow tenant can't hold the connections of the others.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(FineractTenantProperties.class)
+public class FineractTenantRegistry {
+
+    private final FineractTenantProperties properties;
+    private final CamelContext camelContext;
+
+    @Value("${fineract.base-url}")
+    private String fineractBaseUrl;
+
+    @Value("${fineract.endpoint.validation}")
+    private String validationEndpoint;
+
+    @Value("${fineract.endpoint.confirmation}")
+    private String confirmationEndpoint;
+
+    @Value("${fineract.endpoint.client-details}")
+    private String clientDetailsEndpoint;
+
+    @Value("${fineract.endpoint.confirmation-batch}")
+    private String batchConfirmationEndpoint;
+
+    @Value("${fineract.http.max-total-connections}")
+    private int maxTotalConnections;
+
+    @Value("${fineract.http.max-connections-per-route}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${fineract.http.connection-time-to-live}")
+    private long connectionTimeToLive;
+
+    @Value("${fineract.http.validate-after-inactivity}")
+    private int validateAfterInactivity;
+
+    private final Map<String, FineractTenant> tenants = new LinkedHashMap<>();
+    private final Map<String, FineractTenant> tenantsByInstitution = new HashMap<>();
+    private final List<PoolingHttpClientConnectionManager> connectionManagers = new ArrayList<>();
+    private FineractTenant defaultTenant;
+
+    public FineractTenantRegistry(FineractTenantProperties properties, CamelContext camelContext) {
+        this.properties = properties;
+        this.camelContext = camelContext;
+    }
+
+    @PostConstruct
+    void setupTenants() {
+        String defaultTenantId = properties.getDefaultTenant();
+        defaultTenant = createTenant(defaultTenantId, properties.getInstances().get(defaultTenantId));
+        tenants.put(defaultTenantId, defaultTenant);
+        properties.getInstances().forEach((id, tenantProperties) -> {
+            if (!tenants.containsKey(id)) {
+                tenants.put(id, createTenant(id, tenantProperties));
+            }
+        });
+
+        for (FineractTenant tenant : tenants.values()) {
+            tenantsByInstitution.put(tenant.getId(), tenant);
+            FineractTenantProperties.Tenant tenantProperties = properties.getInstances().get(tenant.getId());
+            if (tenantProperties != null) {
+                tenantProperties.getInstitutionIds()
+                        .forEach(institutionId -> tenantsByInstitution.put(institutionId, tenant));
+            }
+        }
+        log.info("Serving Fineract tenants {}, defaulting to {}", tenants.keySet(), defaultTenantId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        connectionManagers.forEach(PoolingHttpClientConnectionManager::shutdown);
+    }
+
+    /**
+     * Resolves the tenant of a transaction.
+     *
+     * @param institutionId
+     *            the account holding institution id of the transaction, if any
+     * @param tenantId
+     *            the tenant id of the transaction, if any
+     * @return the tenant of the transaction, the default tenant when neither id is mapped to a tenant
+     */
+    public FineractTenant resolve(String institutionId, String tenantId) {
+        FineractTenant tenant = institutionId != null ? tenantsByInstitution.get(institutionId) : null;
+        if (tenant == null && tenantId != null) {
+            tenant = tenants.get(tenantId);
+        }
+        return tenant != null ? tenant : defaultTenant;
+    }
+
+    /**
+     * Sets the tenant of the exchange, resolved from its account holding institution id and tenant id properties,
+     * unless it is already set.
+     *
+     * @param exchange
+     *            {@link Exchange}
+     */
+    public void setTenant(Exchange exchange) {
+        if (exchange.getProperty(FINERACT_TENANT) == null) {
+            exchange.setProperty(FINERACT_TENANT,
+                    resolve(exchange.getProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, String.class),
+                            exchange.getProperty(TENANT_ID, String.class)).getId());
+        }
+    }
+
+    /**
+     * @param tenantId
+     *            the tenant id
+     * @return the tenant, or the default tenant if there is no tenant with this id
+     */
+    public FineractTenant getTenant(String tenantId) {
+        return tenantId != null ? tenants.getOrDefault(tenantId, defaultTenant) : defaultTenant;
+    }
+
+    /**
+     * @return the tenant of the transactions that are not mapped to any other tenant
+     */
+    public FineractTenant getDefaultTenant() {
+        return defaultTenant;
+    }
+
+    /**
+     * @return all the tenants, starting with the default tenant
+     */
+    public Collection<FineractTenant> getTenants() {
+        return Collections.unmodifiableCollection(tenants.values());
+    }
+
+    private FineractTenant createTenant(String id, FineractTenantProperties.Tenant tenantProperties) {
+        FineractTenantProperties.Tenant tenant = tenantProperties != null ? tenantProperties
+                : new FineractTenantProperties.Tenant();
+        FineractTenantProperties.Endpoint endpoint = tenant.getEndpoint();
+        String baseUrl = Objects.requireNonNullElse(tenant.getBaseUrl(), fineractBaseUrl);
+
+        int tenantMaxTotalConnections = Objects.requireNonNullElse(tenant.getMaxTotalConnections(),
+                maxTotalConnections);
+        int tenantMaxConnectionsPerRoute = Objects.requireNonNullElse(tenant.getMaxConnectionsPerRoute(),
+                maxConnectionsPerRoute);
+        String connectionManager = FINERACT_CONNECTION_MANAGER;
+        if (!id.equals(properties.getDefaultTenant())) {
+            connectionManager = FINERACT_CONNECTION_MANAGER + "-" + id;
+            PoolingHttpClientConnectionManager tenantConnectionManager = FineractHttpClientConfig
+                    .createConnectionManager(tenantMaxTotalConnections, tenantMaxConnectionsPerRoute,
+                            connectionTimeToLive, validateAfterInactivity);
+            connectionManagers.add(tenantConnectionManager);
+            camelContext.getRegistry().bind(connectionManager, tenantConnectionManager);
+        }
+
+        TokenBucket rateLimiter = null;
+        if (tenant.getRateLimit() != null) {
+            rateLimiter = new TokenBucket(tenant.getRateLimit(), Objects.requireNonNullElse(tenant.getRateLimitBurst(),
+                    (int) Math.ceil(tenant.getRateLimit())));
+        }
+
+        return new FineractTenant(id, Objects.requireNonNullElse(tenant.getPlatformTenantId(), id),
+                baseUrl + Objects.requireNonNullElse(endpoint.getValidation(), validationEndpoint),
+                baseUrl + Objects.requireNonNullElse(endpoint.getConfirmation(), confirmationEndpoint),
+                baseUrl + Objects.requireNonNullElse(endpoint.getClientDetails(), clientDetailsEndpoint),
+                baseUrl + Objects.requireNonNullElse(endpoint.getConfirmationBatch(), batchConfirmationEndpoint),
+                connectionManager, tenantMaxTotalConnections, tenantMaxConnectionsPerRoute, rateLimiter);
+    }
+}
@@ -1,10 +1,11 @@
 package org.mifos.connector.ams.fineract.util;
 
-import com.google.gson.Gson;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_BULKHEAD_FULL_ERROR_CODE;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_CALL_FAILED_ERROR_CODE;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_CIRCUIT_OPEN_ERROR_CODE;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_RATE_LIMITED_ERROR_CODE;
+
 import lombok.extern.slf4j.Slf4j;
-import org.apache.camel.util.json.JsonObject;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 /** Contains utility methods for connection. */
 @Slf4j
@@ -37,13 +38,9 @@ public class ConnectionUtils {
             return "Internal Server Error";
         }
         try {
-            JsonObject jsonObject = (new Gson()).fromJson(errorJson, JsonObject.class);
-            String[] keyList = { "Message", "error", "errorDescription", "errorMessage", "description" };
-            for (String s : keyList) {
-                String data = jsonObject.getString(s);
-                if (data != null && !data.isEmpty()) {
-                    return data;
-                }
+            String description = FineractJsonCodec.readErrorDescription(errorJson);
+            if (description != null) {
+                return description;
             }
         } catch (Exception e) {
             log.error(e.getMessage());
@@ -52,27 +49,26 @@ public class ConnectionUtils {
     }
 
     /**
-     * Convert custom data.
+     * Checks whether an error code means that Fineract is unavailable or overloaded, as opposed to a rejection of the
+     * transaction.
      *
-     * @param customData
-     *            {@link JSONArray}
-     * @param key
-     *            the custom data key
-     * @return the custom data value
+     * @param errorCode
+     *            the error code of the operation, either a fail fast error code or an HTTP status
+     * @return true if the error code is a fail fast error code or a server error status
      */
-    public static String convertCustomData(JSONArray customData, String key) {
-        for (Object obj : customData) {
-            JSONObject item = (JSONObject) obj;
-            try {
-                String filter = item.getString("key");
-                if (filter != null && filter.equalsIgnoreCase(key)) {
-                    Object val = item.get("value");
-                    return val != null ? val.toString() : null;
-                }
-            } catch (Exception e) {
-                log.error("Error while converting custom data: {}", e);
-            }
+    public static boolean isFineractUnavailable(Object errorCode) {
+        if (errorCode == null) {
+            return false;
+        }
+        String code = errorCode.toString();
+        if (FINERACT_CIRCUIT_OPEN_ERROR_CODE.equals(code) || FINERACT_BULKHEAD_FULL_ERROR_CODE.equals(code)
+                || FINERACT_CALL_FAILED_ERROR_CODE.equals(code) || FINERACT_RATE_LIMITED_ERROR_CODE.equals(code)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(code) >= 500;
+        } catch (NumberFormatException e) {
+            return false;
         }
-        return null;
     }
 }
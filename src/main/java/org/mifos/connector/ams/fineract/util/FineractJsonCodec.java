@@ -0,0 +1,309 @@
+package org.mifos.connector.ams.fineract.util;
+
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.AMOUNT_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CURRENCY_VARIABLE_NAME;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CUSTOM_DATA;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.EXTERNAL_ID;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.mifos.connector.ams.fineract.data.ChannelRequest;
+import org.mifos.connector.ams.fineract.data.PayBillRequest;
+
+/**
+ * Streaming JSON codec for the payloads on the transaction path. Payloads are read in a single pass, keeping only the
+ * fields used by the Fineract flows and skipping everything else, and request bodies are written with a shared
+ * {@link ObjectWriter}.
+ */
+public class FineractJsonCodec {
+
+    // Null fields are left out, as by the application object mapper the Camel Jackson data format used to marshal the
+    // requests with, so that the requests sent to Fineract are unchanged
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getFactory();
+    private static final ObjectWriter REQUEST_WRITER = OBJECT_MAPPER.writer();
+
+    private static final String[] ERROR_DESCRIPTION_KEYS = { "Message", "error", "errorDescription", "errorMessage",
+            "description" };
+
+    private FineractJsonCodec() {}
+
+    /**
+     * Reads the fields used by the Fineract flows from the channel request.
+     *
+     * @param json
+     *            the channel request JSON
+     * @return {@link ChannelRequest}
+     */
+    public static ChannelRequest readChannelRequest(String json) {
+        ChannelRequest channelRequest = new ChannelRequest();
+        String topLevelCurrency = null;
+        String amountCurrency = null;
+        boolean isAmountObject = false;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            expectToken(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "payer" -> channelRequest.setPayerIdentifier(readPartyIdentifier(parser));
+                    case "payee" -> channelRequest.setPayeeIdentifier(readPartyIdentifier(parser));
+                    case AMOUNT_VARIABLE_NAME -> {
+                        if (token == JsonToken.START_OBJECT) {
+                            isAmountObject = true;
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String amountField = parser.getCurrentName();
+                                parser.nextToken();
+                                if (AMOUNT_VARIABLE_NAME.equals(amountField)) {
+                                    channelRequest.setAmount(readScalar(parser));
+                                } else if (CURRENCY_VARIABLE_NAME.equals(amountField)) {
+                                    amountCurrency = readScalar(parser);
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        } else {
+                            channelRequest.setAmount(readScalar(parser));
+                        }
+                    }
+                    case CURRENCY_VARIABLE_NAME -> topLevelCurrency = readScalar(parser);
+                    case "useWorkflowIdAsTransactionId" -> channelRequest
+                            .setUseWorkflowIdAsTransactionId(token == JsonToken.VALUE_TRUE);
+                    case "workflowId" -> channelRequest
+                            .setWorkflowId(token == JsonToken.VALUE_STRING ? parser.getText() : skip(parser));
+                    case EXTERNAL_ID -> channelRequest.setExternalId(readScalar(parser));
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read channel request", e);
+        }
+
+        channelRequest.setCurrency(isAmountObject ? amountCurrency : topLevelCurrency);
+        return channelRequest;
+    }
+
+    /**
+     * Reads custom data entries into a map keyed by the lower case entry key. When a key is repeated, the first entry
+     * is kept.
+     *
+     * @param json
+     *            the custom data JSON array
+     * @return the custom data values by lower case key
+     */
+    public static Map<String, String> readCustomData(String json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parser.nextToken();
+            return readCustomData(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read custom data", e);
+        }
+    }
+
+    /**
+     * Reads the fields used by the Fineract flows from the paybill payload.
+     *
+     * @param json
+     *            the paybill payload JSON
+     * @return {@link PayBillRequest}
+     */
+    public static PayBillRequest readPayBillRequest(String json) {
+        PayBillRequest payBillRequest = new PayBillRequest();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            expectToken(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case CUSTOM_DATA -> payBillRequest.setCustomData(readCustomData(parser));
+                    case "primaryIdentifier" -> payBillRequest.setPrimaryIdentifier(readIdentifierValue(parser));
+                    case "secondaryIdentifier" -> payBillRequest.setSecondaryIdentifier(readIdentifierValue(parser));
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read paybill request", e);
+        }
+        if (payBillRequest.getCustomData() == null) {
+            throw new IllegalArgumentException("Paybill request has no " + CUSTOM_DATA);
+        }
+        return payBillRequest;
+    }
+
+    /**
+     * Reads the error description from an error payload, looking for the known description keys in order of priority.
+     *
+     * @param json
+     *            the error payload JSON
+     * @return the error description, or null if none of the keys holds a non empty string
+     * @throws IOException
+     *             if the payload is not a JSON object
+     */
+    public static String readErrorDescription(String json) throws IOException {
+        String[] descriptions = new String[ERROR_DESCRIPTION_KEYS.length];
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            expectToken(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                int index = indexOfErrorDescriptionKey(field);
+                if (index >= 0 && token == JsonToken.VALUE_STRING && descriptions[index] == null) {
+                    descriptions[index] = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        for (String description : descriptions) {
+            if (description != null && !description.isEmpty()) {
+                return description;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a request body.
+     *
+     * @param request
+     *            the request to be written
+     * @return the JSON bytes
+     */
+    public static byte[] writeRequest(Object request) {
+        try {
+            return REQUEST_WRITER.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Unable to write request", e);
+        }
+    }
+
+    private static Map<String, String> readCustomData(JsonParser parser) throws IOException {
+        Map<String, String> customData = new LinkedHashMap<>();
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return customData;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String key = null;
+            String value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("key".equals(field)) {
+                    key = readScalar(parser);
+                } else if ("value".equals(field)) {
+                    value = parser.currentToken().isScalarValue() ? readScalar(parser)
+                            : OBJECT_MAPPER.readTree(parser).toString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (key != null) {
+                customData.putIfAbsent(key.toLowerCase(Locale.ROOT), value);
+            }
+        }
+        return customData;
+    }
+
+    private static String readPartyIdentifier(JsonParser parser) throws IOException {
+        String identifier = null;
+        if (parser.currentToken() == JsonToken.START_ARRAY) {
+            // Only the first party of the list is used
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                identifier = readStringField(parser, "partyIdIdentifier");
+                token = parser.nextToken();
+            }
+            while (token != JsonToken.END_ARRAY && token != null) {
+                parser.skipChildren();
+                token = parser.nextToken();
+            }
+        } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && "partyIdInfo".equals(field)) {
+                    identifier = readStringField(parser, "partyIdentifier");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return identifier;
+    }
+
+    private static String readIdentifierValue(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        return readStringField(parser, "value");
+    }
+
+    /**
+     * Reads a scalar field of the current object, skipping the other fields until the end of the object.
+     */
+    private static String readStringField(JsonParser parser, String name) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals(field)) {
+                value = readScalar(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    private static String readScalar(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static String skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+
+    private static void expectToken(JsonParser parser, JsonToken expected) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + token);
+        }
+    }
+
+    private static int indexOfErrorDescriptionKey(String field) {
+        for (int i = 0; i < ERROR_DESCRIPTION_KEYS.length; i++) {
+            if (ERROR_DESCRIPTION_KEYS[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
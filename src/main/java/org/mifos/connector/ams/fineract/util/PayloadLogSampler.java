@@ -0,0 +1,70 @@
+package org.mifos.connector.ams.fineract.util;
+
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.camel.Exchange;
+import org.apache.camel.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether the payloads of a transaction, the request DTOs, response bodies and headers, are logged. Only a
+ * share of the transactions is logged at high volume, the other logs of the transaction being kept.
+ *
+ * <p>
+ * The decision is taken once per transaction, from a hash of its transaction id, so that all the payloads of a sampled
+ * transaction are logged, across its validation and settlement jobs and across connector instances. An exchange without
+ * a transaction id keeps the decision drawn for its first payload.
+ */
+@Component
+public class PayloadLogSampler implements Predicate {
+
+    private static final String SAMPLED_PROPERTY = "payloadLogSampled";
+
+    // Share of the transactions having their payloads logged, from 0 (none) to 1 (all)
+    @Value("${ams.logging.payload-sample-rate:1.0}")
+    private double sampleRate;
+
+    /**
+     * @param exchange
+     *            the exchange of the transaction
+     * @return true if the payloads of the exchange's transaction should be logged
+     */
+    public boolean isSampled(Exchange exchange) {
+        if (sampleRate >= 1 || sampleRate <= 0) {
+            return sampleRate > 0;
+        }
+        Object transactionId = exchange.getProperty(TRANSACTION_ID);
+        if (transactionId != null) {
+            return isSampled(transactionId.toString());
+        }
+        Boolean isSampled = exchange.getProperty(SAMPLED_PROPERTY, Boolean.class);
+        if (isSampled == null) {
+            isSampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+            exchange.setProperty(SAMPLED_PROPERTY, isSampled);
+        }
+        return isSampled;
+    }
+
+    /**
+     * @param transactionId
+     *            the transaction id
+     * @return true if the payloads of the transaction should be logged
+     */
+    public boolean isSampled(String transactionId) {
+        // Mixes the hash code bits, so that transaction ids differing only in their last characters are spread evenly
+        int hash = transactionId.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) < sampleRate * Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean matches(Exchange exchange) {
+        return isSampled(exchange);
+    }
+}
@@ -0,0 +1,188 @@
+package org.mifos.connector.ams.fineract.zeebe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the number of jobs a worker has in flight, adjusting the bound with an additive increase/multiplicative
+ * decrease (AIMD) policy: each job completed within the latency threshold while the limit is in use raises the limit by
+ * 1/limit, so by about one job per round of jobs, and a slow or overloaded completion multiplies it by the backoff
+ * ratio, at most once per latency threshold so that the jobs of the same round only back off once.
+ *
+ * <p>
+ * When the min and max limits are equal the limit is fixed and it behaves as a semaphore.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private long decreases;
+
+    /**
+     * Creates a limit.
+     *
+     * @param initialLimit
+     *            the initial limit, bounded by the min and max limits
+     * @param minLimit
+     *            the lowest value the limit can be decreased to
+     * @param maxLimit
+     *            the highest value the limit can be increased to
+     * @param latencyThresholdMillis
+     *            the job latency above which a completion is considered slow
+     * @param backoffRatio
+     *            the ratio applied to the limit on a slow or overloaded completion
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis,
+            double backoffRatio) {
+        this(initialLimit, minLimit, maxLimit, latencyThresholdMillis, backoffRatio, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis,
+            double backoffRatio, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit bounds [" + minLimit + ", " + maxLimit + "]");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1, was " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = nanoClock.getAsLong() - latencyThresholdNanos;
+    }
+
+    /**
+     * Takes a slot, waiting for one to be released if the limit is reached.
+     */
+    public void acquire() {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                slotReleased.awaitUninterruptibly();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the slots available under the limit, without waiting.
+     *
+     * @param maxSlots
+     *            the maximum number of slots to take
+     * @return the number of slots taken
+     */
+    public int tryAcquire(int maxSlots) {
+        lock.lock();
+        try {
+            int slots = Math.max(0, Math.min(maxSlots, (int) limit - inFlight));
+            inFlight += slots;
+            return slots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases slots that were not used, without adjusting the limit.
+     *
+     * @param slots
+     *            the number of slots to release
+     */
+    public void release(int slots) {
+        lock.lock();
+        try {
+            inFlight -= slots;
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a completed job and adjusts the limit from its outcome.
+     *
+     * @param latencyNanos
+     *            the job latency
+     * @param isOverloaded
+     *            whether the job failed because Fineract is unavailable or overloaded
+     */
+    public void release(long latencyNanos, boolean isOverloaded) {
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            if (isOverloaded || latencyNanos > latencyThresholdNanos) {
+                if (now - lastDecreaseNanos >= latencyThresholdNanos && limit > minLimit) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                    decreases++;
+                }
+            } else if (inFlight >= limit / 2) {
+                // Only grow when the current limit is in use, otherwise the limit says nothing about the capacity
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            inFlight--;
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of slots in use
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of times the limit was decreased
+     */
+    public long getDecreases() {
+        lock.lock();
+        try {
+            return decreases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the highest value the limit can be increased to
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
@@ -0,0 +1,112 @@
+package org.mifos.connector.ams.fineract.zeebe;
+
+import io.camunda.zeebe.client.ZeebeClient;
+import io.camunda.zeebe.client.api.response.ActivateJobsResponse;
+import io.camunda.zeebe.client.api.response.ActivatedJob;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Activates jobs of a type as slots become available under an {@link AdaptiveConcurrencyLimit}, so that the number of
+ * jobs held by the connector follows the limit instead of a fixed max jobs active. Each activated job holds a slot,
+ * which must be released by the handler once the job is completed.
+ */
+@Slf4j
+public class AdaptiveJobActivator {
+
+    private final ZeebeClient zeebeClient;
+    private final String jobType;
+    private final List<String> fetchVariables;
+    private final AdaptiveConcurrencyLimit limit;
+    private final Consumer<ActivatedJob> handler;
+    private final Executor handlerExecutor;
+    private final Duration pollInterval;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates an activator, polling with the client default job timeout, request timeout and poll interval.
+     *
+     * @param zeebeClient
+     *            {@link ZeebeClient}
+     * @param jobType
+     *            the type of the jobs to activate, also used as the worker name
+     * @param fetchVariables
+     *            the variables to fetch with the jobs
+     * @param limit
+     *            the limit of jobs in flight
+     * @param handler
+     *            handles an activated job, releasing its slot once the job is completed
+     * @param handlerExecutor
+     *            the executor running the handler
+     */
+    public AdaptiveJobActivator(ZeebeClient zeebeClient, String jobType, List<String> fetchVariables,
+            AdaptiveConcurrencyLimit limit, Consumer<ActivatedJob> handler, Executor handlerExecutor) {
+        this.zeebeClient = zeebeClient;
+        this.jobType = jobType;
+        this.fetchVariables = fetchVariables;
+        this.limit = limit;
+        this.handler = handler;
+        this.handlerExecutor = handlerExecutor;
+        this.pollInterval = zeebeClient.getConfiguration().getDefaultJobPollInterval();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "zeebe-activator-" + jobType);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts polling for jobs.
+     */
+    public void start() {
+        scheduler.execute(this::poll);
+    }
+
+    /**
+     * Stops polling for jobs. Jobs already activated are still handled.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void poll() {
+        int slots = limit.tryAcquire(limit.getMaxLimit());
+        if (slots == 0) {
+            schedulePoll(pollInterval);
+            return;
+        }
+
+        // The request is long polled by the gateway until jobs are available or the request timeout is reached
+        zeebeClient.newActivateJobsCommand().jobType(jobType).maxJobsToActivate(slots).workerName(jobType)
+                .timeout(zeebeClient.getConfiguration().getDefaultJobTimeout())
+                .requestTimeout(zeebeClient.getConfiguration().getDefaultRequestTimeout())
+                .fetchVariables(fetchVariables).send()
+                .whenComplete((response, throwable) -> onActivated(slots, response, throwable));
+    }
+
+    private void onActivated(int slots, ActivateJobsResponse response, Throwable throwable) {
+        int activated = response != null ? response.getJobs().size() : 0;
+        limit.release(slots - activated);
+        if (throwable != null) {
+            log.warn("Failed to activate jobs of type {}: {}", jobType, throwable.getMessage());
+            schedulePoll(pollInterval);
+            return;
+        }
+        for (ActivatedJob job : response.getJobs()) {
+            handlerExecutor.execute(() -> handler.accept(job));
+        }
+        schedulePoll(activated > 0 ? Duration.ZERO : pollInterval);
+    }
+
+    private void schedulePoll(Duration delay) {
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::poll, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.mifos.connector.ams.fineract.zeebe;
+
+import io.camunda.zeebe.client.ZeebeClient;
+import io.camunda.zeebe.client.api.ZeebeFuture;
+import io.camunda.zeebe.client.api.command.ClientStatusException;
+import io.camunda.zeebe.client.api.response.ActivatedJob;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends the complete and fail commands of the jobs handled by the workers, tracking them until they are acknowledged by
+ * the broker. Commands rejected with a transient gRPC status are resent with an exponential backoff, so that a broker
+ * hiccup does not leave the job to time out and the Fineract call to be made again.
+ */
+@Slf4j
+@Component
+public class ZeebeJobCompleter {
+
+    private static final Set<Status.Code> TRANSIENT_STATUS_CODES = EnumSet.of(Status.Code.UNAVAILABLE,
+            Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED, Status.Code.ABORTED);
+
+    private final ZeebeClient zeebeClient;
+    private final CamelContext camelContext;
+    private final ConnectorMetrics connectorMetrics;
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+    private final ScheduledExecutorService retryScheduler;
+
+    @Value("${zeebe.client.job-commands.max-attempts}")
+    private int maxAttempts;
+
+    // Backoff in milliseconds before the first resend, doubled on each attempt
+    @Value("${zeebe.client.job-commands.initial-backoff}")
+    private long initialBackoff;
+
+    @Value("${zeebe.client.job-commands.max-backoff}")
+    private long maxBackoff;
+
+    // Delay in milliseconds before a failed job can be activated again
+    @Value("${zeebe.client.job-retry.backoff}")
+    private long jobRetryBackoff;
+
+    public ZeebeJobCompleter(ZeebeClient zeebeClient, CamelContext camelContext, ConnectorMetrics connectorMetrics) {
+        this.zeebeClient = zeebeClient;
+        this.camelContext = camelContext;
+        this.connectorMetrics = connectorMetrics;
+        this.retryScheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                "ZeebeJobCommandRetry");
+        connectorMetrics.registerPendingJobCommands(pendingCommands);
+    }
+
+    /**
+     * Completes a job.
+     *
+     * @param job
+     *            {@link ActivatedJob}
+     * @param variables
+     *            the variables to complete the job with
+     * @return the future completed once the command is acknowledged, or completed exceptionally once it can no longer
+     *         be resent
+     */
+    public CompletableFuture<Void> complete(ActivatedJob job, Map<String, Object> variables) {
+        return send("complete", job, () -> zeebeClient.newCompleteCommand(job.getKey()).variables(variables).send());
+    }
+
+    /**
+     * Fails a job, decrementing its retries. The job can be activated again after the retry backoff while it has
+     * retries left, otherwise an incident is raised.
+     *
+     * @param job
+     *            {@link ActivatedJob}
+     * @param errorMessage
+     *            the reason of the failure
+     * @return the future completed once the command is acknowledged, or completed exceptionally once it can no longer
+     *         be resent
+     */
+    public CompletableFuture<Void> fail(ActivatedJob job, String errorMessage) {
+        int retries = Math.max(0, job.getRetries() - 1);
+        Duration retryBackoff = retries > 0 ? Duration.ofMillis(jobRetryBackoff) : Duration.ZERO;
+        log.warn("Failing job {} of type {} with {} retries left: {}", job.getKey(), job.getType(), retries,
+                errorMessage);
+        return send("fail", job, () -> zeebeClient.newFailCommand(job.getKey()).retries(retries)
+                .retryBackoff(retryBackoff).errorMessage(errorMessage).send());
+    }
+
+    /** Stops resending commands. */
+    @PreDestroy
+    public void shutdown() {
+        camelContext.getExecutorServiceManager().shutdownNow(retryScheduler);
+    }
+
+    private CompletableFuture<Void> send(String command, ActivatedJob job, Supplier<ZeebeFuture<?>> sender) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        pendingCommands.incrementAndGet();
+        result.whenComplete((ignored, throwable) -> pendingCommands.decrementAndGet());
+        attempt(command, job, sender, 1, result);
+        return result;
+    }
+
+    private void attempt(String command, ActivatedJob job, Supplier<ZeebeFuture<?>> sender, int attempt,
+            CompletableFuture<Void> result) {
+        ZeebeFuture<?> future;
+        try {
+            future = sender.get();
+        } catch (RuntimeException e) {
+            log.error("Failed to send the {} command of job {}: {}", command, job.getKey(), e.getMessage());
+            connectorMetrics.jobCommandCompleted(command, false);
+            result.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                connectorMetrics.jobCommandCompleted(command, true);
+                result.complete(null);
+                return;
+            }
+
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            if (isTransient(cause) && attempt < maxAttempts && !retryScheduler.isShutdown()) {
+                long backoff = Math.min(maxBackoff, initialBackoff << (attempt - 1));
+                log.warn("Attempt {} to {} job {} failed, retrying in {}ms: {}", attempt, command, job.getKey(),
+                        backoff, cause.getMessage());
+                retryScheduler.schedule(() -> attempt(command, job, sender, attempt + 1, result), backoff,
+                        TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            // NOT_FOUND means that the job timed out or was cancelled, so it can't be completed anymore
+            log.error("Failed to {} job {} after {} attempts: {}", command, job.getKey(), attempt, cause.getMessage());
+            connectorMetrics.jobCommandCompleted(command, false);
+            result.completeExceptionally(cause);
+        });
+    }
+
+    private static boolean isTransient(Throwable throwable) {
+        return throwable instanceof ClientStatusException statusException
+                && TRANSIENT_STATUS_CODES.contains(statusException.getStatusCode());
+    }
+}
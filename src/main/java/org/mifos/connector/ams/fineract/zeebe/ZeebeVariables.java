@@ -18,4 +18,6 @@ public class ZeebeVariables {
     public static final String FINERACT_AMS_ZEEBEE_SETTLEMENT_WORKER_NAME = "transfer-settlement-fineract";
     public static final String CUSTOM_DATA = "customData";
     public static final String CONFIRMATION_RECEIVED = "confirmationReceived";
+    public static final String TENANT_ID = "tenantId";
+    public static final String SETTLEMENT_QUEUED = "settlementQueued";
 }
@@ -1,5 +1,6 @@
 package org.mifos.connector.ams.fineract.zeebe;
 
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME;
 import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CHANNEL_REQUEST;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CONFIRMATION_RECEIVED;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.CUSTOM_DATA;
@@ -11,23 +12,37 @@ import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.FINERACT_AMS
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.FINERACT_AMS_ZEEBEE_VALIDATION_WORKER_NAME;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.GET_TRANSACTION_STATUS_RESPONSE_CODE;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.PARTY_LOOKUP_FAILED;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.SETTLEMENT_QUEUED;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TENANT_ID;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_FAILED;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
 import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSFER_SETTLEMENT_FAILED;
 
 import io.camunda.zeebe.client.ZeebeClient;
 import io.camunda.zeebe.client.api.response.ActivatedJob;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.ProducerTemplate;
 import org.apache.camel.support.DefaultExchange;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.mifos.connector.ams.fineract.data.ChannelRequest;
+import org.mifos.connector.ams.fineract.idempotency.IdempotentOperationExecutor;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
 import org.mifos.connector.ams.fineract.util.ConnectionUtils;
+import org.mifos.connector.ams.fineract.util.FineractJsonCodec;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -36,9 +51,27 @@ import org.springframework.stereotype.Component;
 @Component
 public class ZeebeWorkers {
 
+    // MDC key of the job being handled, the transaction id being under TRANSACTION_ID
+    private static final String JOB_KEY_MDC_KEY = "jobKey";
+
+    // Only the variables read by the workers are fetched with the jobs
+    private static final List<String> VALIDATION_INPUTS = List.of(CHANNEL_REQUEST, TRANSACTION_ID, CUSTOM_DATA,
+            ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, TENANT_ID);
+    private static final List<String> SETTLEMENT_INPUTS = List.of(CHANNEL_REQUEST, TRANSACTION_ID, EXTERNAL_ID,
+            TRANSACTION_FAILED, ERROR_DESCRIPTION, GET_TRANSACTION_STATUS_RESPONSE_CODE, CONFIRMATION_RECEIVED,
+            ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, TENANT_ID);
+
     private final ZeebeClient zeebeClient;
     private final CamelContext camelContext;
     private final ProducerTemplate producerTemplate;
+    private final IdempotentOperationExecutor idempotentOperationExecutor;
+    private final ConnectorMetrics connectorMetrics;
+    private final ZeebeJobCompleter jobCompleter;
+    private final List<AdaptiveJobActivator> jobActivators = new ArrayList<>();
+    private final List<ExecutorService> activatedJobExecutors = new ArrayList<>();
+    private Executor jobHandlerExecutor;
+    // Pool of the offloaded execution mode, the Fineract calls blocking the thread they are made on
+    private ExecutorService offloadedSendExecutor;
 
     // This value determines if an API call to Fineract AMS will be made
     @Value("${ams.local.enabled:false}")
@@ -47,85 +80,359 @@ public class ZeebeWorkers {
     @Value("${zeebe.client.evenly-allocated-max-jobs}")
     private int workerMaxJobs;
 
-    public ZeebeWorkers(ZeebeClient zeebeClient, CamelContext camelContext, ProducerTemplate producerTemplate) {
+    // When enabled, job handlers return as soon as the exchange is handed over to a pool, which still holds a thread
+    // for each Fineract call in flight. The former async-execution-enabled name is still read
+    @Value("${zeebe.client.offloaded-execution-enabled:${zeebe.client.async-execution-enabled:false}}")
+    private boolean isOffloadedExecutionEnabled;
+
+    // When enabled, each job is processed on its own virtual thread instead of the zeebe client execution thread
+    @Value("${zeebe.client.virtual-threads-enabled:false}")
+    private boolean isVirtualThreadsEnabled;
+
+    // Max jobs each worker holds in virtual-thread mode, where the jobs in flight don't hold a platform thread. It
+    // replaces the evenly allocated max jobs and the adaptive max jobs, both sized for the execution threads
+    @Value("${zeebe.client.virtual-threads-max-jobs:500}")
+    private int virtualThreadsMaxJobs;
+
+    // When enabled, the number of jobs activated by each worker follows the Fineract latency and errors
+    @Value("${zeebe.client.adaptive-activation.enabled:false}")
+    private boolean isAdaptiveActivationEnabled;
+
+    @Value("${zeebe.client.adaptive-activation.min-jobs:1}")
+    private int adaptiveMinJobs;
+
+    @Value("${zeebe.client.adaptive-activation.max-jobs:${zeebe.client.max-execution-threads}}")
+    private int adaptiveMaxJobs;
+
+    // Job latency in milliseconds above which the limit is decreased
+    @Value("${zeebe.client.adaptive-activation.latency-threshold:5000}")
+    private long adaptiveLatencyThreshold;
+
+    @Value("${zeebe.client.adaptive-activation.backoff-ratio:0.7}")
+    private double adaptiveBackoffRatio;
+
+    // When enabled, jobs are retried by the broker when Fineract is unavailable instead of failing the transaction
+    @Value("${zeebe.client.job-retry.enabled:false}")
+    private boolean isJobRetryEnabled;
+
+    public ZeebeWorkers(ZeebeClient zeebeClient, CamelContext camelContext, ProducerTemplate producerTemplate,
+            IdempotentOperationExecutor idempotentOperationExecutor, ConnectorMetrics connectorMetrics,
+            ZeebeJobCompleter jobCompleter) {
         this.zeebeClient = zeebeClient;
         this.camelContext = camelContext;
         this.producerTemplate = producerTemplate;
+        this.idempotentOperationExecutor = idempotentOperationExecutor;
+        this.connectorMetrics = connectorMetrics;
+        this.jobCompleter = jobCompleter;
     }
 
     /** Defining workers in charge of calling Fineract validation and confirmation APIs. */
     @PostConstruct
     public void setupWorkers() {
+        jobHandlerExecutor = isVirtualThreadsEnabled
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("zeebe-job-handler-", 0).factory())
+                : Runnable::run;
+        if (isOffloadedExecutionEnabled) {
+            // Sized so that all the jobs the validation and settlement workers can hold are in flight at once
+            int maxJobs = isAdaptiveActivationEnabled ? getAdaptiveMaxJobs() : getMaxJobs();
+            offloadedSendExecutor = camelContext.getExecutorServiceManager().newFixedThreadPool(this,
+                    "ZeebeOffloadedSend", 2 * maxJobs);
+        }
+
         // Defining worker in charge of calling Fineract validation API
-        zeebeClient.newWorker().jobType(FINERACT_AMS_ZEEBEE_VALIDATION_WORKER_NAME).handler((client, job) -> {
-            logWorkerDetails(job);
+        openWorker(FINERACT_AMS_ZEEBEE_VALIDATION_WORKER_NAME, VALIDATION_INPUTS, PARTY_LOOKUP_FAILED, job -> {
+            Exchange ex = new DefaultExchange(camelContext);
 
-            Map<String, Object> variables;
+            Map<String, Object> variables = job.getVariablesAsMap();
 
-            if (isAmsLocalEnabled) {
-                Exchange ex = new DefaultExchange(camelContext);
+            ChannelRequest channelRequest = FineractJsonCodec
+                    .readChannelRequest((String) variables.get(CHANNEL_REQUEST));
+            ex.setProperty(CHANNEL_REQUEST, channelRequest);
+            ex.setProperty(TRANSACTION_ID, variables.get(TRANSACTION_ID));
+            setTenantVariables(ex, variables);
+            String customDataString = (String) variables.get(CUSTOM_DATA);
+            if (customDataString != null && !customDataString.isBlank()) {
+                ex.setProperty(CUSTOM_DATA, FineractJsonCodec.readCustomData(customDataString));
+            }
+            return execute(job, "direct:transfer-validation-base", ex, PARTY_LOOKUP_FAILED);
+        });
 
-                variables = job.getVariablesAsMap();
+        // Defining worker in charge of calling Fineract confirmation API
+        openWorker(FINERACT_AMS_ZEEBEE_SETTLEMENT_WORKER_NAME, SETTLEMENT_INPUTS, TRANSFER_SETTLEMENT_FAILED, job -> {
+            Exchange ex = new DefaultExchange(camelContext);
+            Map<String, Object> variables = job.getVariablesAsMap();
+            ChannelRequest channelRequest = FineractJsonCodec
+                    .readChannelRequest((String) variables.get(CHANNEL_REQUEST));
+            ex.setProperty(CHANNEL_REQUEST, channelRequest);
+            ex.setProperty(TRANSACTION_ID, variables.get(TRANSACTION_ID));
+            ex.setProperty(EXTERNAL_ID, variables.get(EXTERNAL_ID));
+            ex.setProperty(TRANSACTION_FAILED, variables.get(TRANSACTION_FAILED));
+            ex.setProperty(ERROR_DESCRIPTION, variables.get(ERROR_DESCRIPTION));
+            ex.setProperty(GET_TRANSACTION_STATUS_RESPONSE_CODE, variables.get(GET_TRANSACTION_STATUS_RESPONSE_CODE));
+            ex.setProperty(CONFIRMATION_RECEIVED, variables.get(CONFIRMATION_RECEIVED));
+            setTenantVariables(ex, variables);
 
-                JSONObject channelRequest = new JSONObject((String) variables.get(CHANNEL_REQUEST));
-                ex.setProperty(CHANNEL_REQUEST, channelRequest);
-                ex.setProperty(TRANSACTION_ID, variables.get(TRANSACTION_ID));
-                String customDataString = (String) variables.get(CUSTOM_DATA);
-                if (customDataString != null && !customDataString.isBlank()) {
-                    JSONArray customData = new JSONArray(customDataString);
-                    ex.setProperty(CUSTOM_DATA, customData);
-                }
-                producerTemplate.send("direct:transfer-validation-base", ex);
+            return execute(job, "direct:transfer-settlement-base", ex, TRANSFER_SETTLEMENT_FAILED);
+        });
+    }
 
-                checkOperationResultAndSetVariables(PARTY_LOOKUP_FAILED, ex, variables);
+    /** Stops the adaptive job activators and the pools running the job handlers, if any. */
+    @PreDestroy
+    public void stopWorkers() {
+        jobActivators.forEach(AdaptiveJobActivator::stop);
+        activatedJobExecutors.forEach(camelContext.getExecutorServiceManager()::shutdownGraceful);
+        if (jobHandlerExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+        if (offloadedSendExecutor != null) {
+            camelContext.getExecutorServiceManager().shutdownGraceful(offloadedSendExecutor);
+        }
+    }
 
-            } else {
-                variables = setVariablesForDisabledLocalAms(PARTY_LOOKUP_FAILED);
-            }
-            zeebeClient.newCompleteCommand(job.getKey()).variables(variables).send();
-        }).name(FINERACT_AMS_ZEEBEE_VALIDATION_WORKER_NAME).maxJobsActive(workerMaxJobs).open();
+    /**
+     * Opens a worker for the given job type, each job holding a slot of the worker's {@link AdaptiveConcurrencyLimit}
+     * until it is completed.
+     *
+     * <p>
+     * With adaptive activation, jobs are only activated as slots become available under a limit that follows the
+     * Fineract latency and errors. Otherwise a job worker activates up to the evenly allocated max jobs, or the virtual
+     * threads max jobs in virtual-thread mode, and the limit is fixed to the same value.
+     *
+     * @param jobType
+     *            the job type
+     * @param fetchVariables
+     *            the variables read by the operation, the only ones fetched with the jobs
+     * @param operationName
+     *            the name of the variable holding whether the operation failed
+     * @param operation
+     *            starts the operation of a job, returning the future of the variables to complete the job with
+     */
+    private void openWorker(String jobType, List<String> fetchVariables, String operationName,
+            Function<ActivatedJob, CompletableFuture<Map<String, Object>>> operation) {
+        if (isAdaptiveActivationEnabled) {
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(workerMaxJobs, adaptiveMinJobs,
+                    getAdaptiveMaxJobs(), adaptiveLatencyThreshold, adaptiveBackoffRatio);
+            connectorMetrics.registerConcurrencyLimit(jobType, limit);
+            // Handlers may block until the job is completed, so they can't run on the activation callback thread. The
+            // activator never holds more jobs than the max limit, which bounds the pool
+            Executor activatedJobExecutor = isVirtualThreadsEnabled ? jobHandlerExecutor
+                    : newActivatedJobExecutor(jobType);
+            AdaptiveJobActivator activator = new AdaptiveJobActivator(zeebeClient, jobType, fetchVariables, limit,
+                    job -> handleJob(job, operationName, operation, limit), activatedJobExecutor);
+            jobActivators.add(activator);
+            activator.start();
+        } else {
+            int maxJobs = getMaxJobs();
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(maxJobs, maxJobs, maxJobs,
+                    adaptiveLatencyThreshold, adaptiveBackoffRatio);
+            connectorMetrics.registerConcurrencyLimit(jobType, limit);
+            zeebeClient.newWorker().jobType(jobType).handler((client, job) -> {
+                limit.acquire();
+                handleJob(job, operationName, operation, limit);
+            }).name(jobType).maxJobsActive(maxJobs).fetchVariables(fetchVariables).open();
+        }
+    }
 
-        // Defining worker in charge of calling Fineract confirmation API
-        zeebeClient.newWorker().jobType(FINERACT_AMS_ZEEBEE_SETTLEMENT_WORKER_NAME).handler((client, job) -> {
+    /**
+     * @return the max number of jobs each worker holds with a fixed limit
+     */
+    private int getMaxJobs() {
+        return isVirtualThreadsEnabled ? virtualThreadsMaxJobs : workerMaxJobs;
+    }
+
+    /**
+     * @return the highest value the adaptive limit of each worker can be increased to
+     */
+    private int getAdaptiveMaxJobs() {
+        return isVirtualThreadsEnabled ? virtualThreadsMaxJobs : adaptiveMaxJobs;
+    }
+
+    /**
+     * Creates the Camel managed pool running the handlers of the jobs activated by an adaptive job activator, shut down
+     * with the workers.
+     *
+     * @param jobType
+     *            the job type of the activator
+     * @return {@link ExecutorService}
+     */
+    private ExecutorService newActivatedJobExecutor(String jobType) {
+        ExecutorService executor = camelContext.getExecutorServiceManager().newFixedThreadPool(this,
+                "ZeebeActivatedJobs-" + jobType, adaptiveMaxJobs);
+        activatedJobExecutors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Runs the operation of a job and completes the job with its result once it is available, releasing the job's slot.
+     *
+     * <p>
+     * A job whose operation throws is failed, and is retried by the broker while it has retries left. When job retry is
+     * enabled, a job whose Fineract call failed because Fineract is unavailable or overloaded is also failed while it
+     * has more than one retry left, so that the transaction is only failed once the retries are used up.
+     *
+     * @param job
+     *            {@link ActivatedJob}
+     * @param operationName
+     *            the name of the variable holding whether the operation failed
+     * @param operation
+     *            starts the operation of the job
+     * @param limit
+     *            the limit of the worker, of which the job holds a slot
+     */
+    private void handleJob(ActivatedJob job, String operationName,
+            Function<ActivatedJob, CompletableFuture<Map<String, Object>>> operation, AdaptiveConcurrencyLimit limit) {
+        Timer.Sample sample = connectorMetrics.jobStarted(job.getType());
+        MDC.put(JOB_KEY_MDC_KEY, String.valueOf(job.getKey()));
+        CompletableFuture<Map<String, Object>> result;
+        Map<String, String> mdcContext;
+        try {
             logWorkerDetails(job);
+            if (!isAmsLocalEnabled) {
+                result = CompletableFuture.completedFuture(setVariablesForDisabledLocalAms(operationName));
+            } else {
+                try {
+                    result = operation.apply(job);
+                } catch (RuntimeException e) {
+                    result = CompletableFuture.failedFuture(e);
+                }
+            }
+            mdcContext = MDC.getCopyOfContextMap();
+        } finally {
+            MDC.remove(JOB_KEY_MDC_KEY);
+            MDC.remove(TRANSACTION_ID);
+        }
 
-            Map<String, Object> variables;
+        result.whenComplete((variables, throwable) -> {
+            long latencyNanos = 0;
+            boolean isOverloaded = true;
+            // The operation may complete on another thread, which carries the MDC of the job for the completion logs
+            setMdcContext(mdcContext);
+            try {
+                if (throwable != null) {
+                    log.error("Processing of job {} failed: {}", job.getKey(), throwable.getMessage());
+                    latencyNanos = connectorMetrics.jobCompleted(job.getType(), sample, true);
+                    jobCompleter.fail(job, String.valueOf(throwable.getMessage()));
+                    return;
+                }
+                latencyNanos = connectorMetrics.jobCompleted(job.getType(), sample,
+                        !Boolean.FALSE.equals(variables.get(operationName)));
+                isOverloaded = !Boolean.TRUE.equals(variables.get(SETTLEMENT_QUEUED))
+                        && ConnectionUtils.isFineractUnavailable(variables.get(ERROR_CODE));
+                if (isOverloaded && isJobRetryEnabled && job.getRetries() > 1) {
+                    jobCompleter.fail(job, "Fineract is unavailable: " + variables.get(ERROR_CODE));
+                } else {
+                    jobCompleter.complete(job, variables);
+                }
+            } finally {
+                limit.release(latencyNanos, isOverloaded);
+                MDC.remove(JOB_KEY_MDC_KEY);
+                MDC.remove(TRANSACTION_ID);
+            }
+        });
+    }
 
-            if (isAmsLocalEnabled) {
-                Exchange ex = new DefaultExchange(camelContext);
-                variables = job.getVariablesAsMap();
-                JSONObject channelRequest = new JSONObject((String) variables.get(CHANNEL_REQUEST));
-                ex.setProperty(CHANNEL_REQUEST, channelRequest);
-                ex.setProperty(TRANSACTION_ID, variables.get(TRANSACTION_ID));
-                ex.setProperty(EXTERNAL_ID, variables.get(EXTERNAL_ID));
-                ex.setProperty(TRANSACTION_FAILED, variables.get(TRANSACTION_FAILED));
-                ex.setProperty(ERROR_DESCRIPTION, variables.get(ERROR_DESCRIPTION));
-                ex.setProperty(GET_TRANSACTION_STATUS_RESPONSE_CODE,
-                        variables.get(GET_TRANSACTION_STATUS_RESPONSE_CODE));
-                ex.setProperty(CONFIRMATION_RECEIVED, variables.get(CONFIRMATION_RECEIVED));
+    /**
+     * Sends the exchange to the given route. The job is completed with the operation result only, since the other
+     * variables are left unchanged.
+     *
+     * <p>
+     * In offloaded execution mode the exchange is processed on a pool sized to the jobs the workers can hold, so the
+     * job worker thread is released while the Fineract call is in flight. This is not asynchronous I/O: the Fineract
+     * call routes go through a circuit breaker that runs the call synchronously, so a pool thread is held for each call
+     * in flight, and the pool size bounds the calls in flight. Since the Zeebe client considers a job handled as soon
+     * as the handler returns, the worker limit bounds the number of jobs in flight.
+     *
+     * <p>
+     * Otherwise the exchange is processed on the job handler executor, which is either the calling job worker thread or
+     * a virtual thread per job. In both modes the thread processing the exchange carries the MDC of the job, so that
+     * the route logs hold the job key and transaction id.
+     *
+     * <p>
+     * Jobs of the same type for the same transaction are de-duplicated, a duplicate being completed with the result of
+     * the call in flight or with the recorded result of a previous successful or queued call.
+     *
+     * @param job
+     *            {@link ActivatedJob}
+     * @param endpointUri
+     *            the route to send the exchange to
+     * @param ex
+     *            {@link Exchange}
+     * @param operationName
+     *            the operation name
+     * @return the future of the variables to complete the job with
+     */
+    private CompletableFuture<Map<String, Object>> execute(ActivatedJob job, String endpointUri, Exchange ex,
+            String operationName) {
+        MDC.put(TRANSACTION_ID, ex.getProperty(TRANSACTION_ID, String.class));
+        return idempotentOperationExecutor.execute(job.getType(), ex.getProperty(TRANSACTION_ID, String.class),
+                () -> send(endpointUri, ex, operationName),
+                // A queued confirmation is recorded as well, so that a duplicate job does not queue it again
+                result -> Boolean.FALSE.equals(result.get(operationName))
+                        || Boolean.TRUE.equals(result.get(SETTLEMENT_QUEUED)));
+    }
 
-                producerTemplate.send("direct:transfer-settlement-base", ex);
+    private CompletableFuture<Map<String, Object>> send(String endpointUri, Exchange ex, String operationName) {
+        Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        if (!isOffloadedExecutionEnabled) {
+            return CompletableFuture.supplyAsync(() -> {
+                setMdcContext(mdcContext);
+                producerTemplate.send(endpointUri, ex);
+                return getOperationResult(operationName, ex);
+            }, jobHandlerExecutor);
+        }
 
-                checkOperationResultAndSetVariables(TRANSFER_SETTLEMENT_FAILED, ex, variables);
-            } else {
-                variables = setVariablesForDisabledLocalAms(TRANSFER_SETTLEMENT_FAILED);
+        return CompletableFuture.supplyAsync(() -> {
+            // Pool threads are reused, so the MDC of the job is removed once the exchange is processed
+            setMdcContext(mdcContext);
+            try {
+                return producerTemplate.send(endpointUri, ex);
+            } finally {
+                MDC.remove(JOB_KEY_MDC_KEY);
+                MDC.remove(TRANSACTION_ID);
+            }
+        }, offloadedSendExecutor).handle((result, throwable) -> {
+            if (throwable != null) {
+                log.error("Offloaded processing of {} for transaction {} failed: {}", endpointUri,
+                        ex.getProperty(TRANSACTION_ID), throwable.getMessage());
+                ex.setProperty(operationName, true);
             }
+            return getOperationResult(operationName, ex);
+        });
+    }
 
-            zeebeClient.newCompleteCommand(job.getKey()).variables(variables).send();
-        }).name(FINERACT_AMS_ZEEBEE_SETTLEMENT_WORKER_NAME).maxJobsActive(workerMaxJobs).open();
+    private static void logWorkerDetails(ActivatedJob job) {
+        if (log.isInfoEnabled()) {
+            log.info("Job started: bpmnProcessId={}, elementInstanceKey={}, jobKey={}, jobType={}, "
+                    + "workflowElementId={}, workflowDefinitionVersion={}, workflowKey={}, workflowInstanceKey={}",
+                    job.getBpmnProcessId(), job.getElementInstanceKey(), job.getKey(), job.getType(),
+                    job.getElementId(), job.getProcessDefinitionVersion(), job.getProcessDefinitionKey(),
+                    job.getProcessInstanceKey());
+        }
+    }
+
+    /**
+     * Sets the variables the Fineract tenant of the transaction is resolved from.
+     *
+     * @param ex
+     *            {@link Exchange}
+     * @param variables
+     *            the job variables
+     */
+    private static void setTenantVariables(Exchange ex, Map<String, Object> variables) {
+        Object institutionId = variables.get(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME);
+        if (institutionId != null) {
+            ex.setProperty(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, institutionId.toString());
+        }
+        Object tenantId = variables.get(TENANT_ID);
+        if (tenantId != null) {
+            ex.setProperty(TENANT_ID, tenantId.toString());
+        }
     }
 
-    private void logWorkerDetails(ActivatedJob job) {
-        JSONObject jsonJob = new JSONObject();
-        jsonJob.put("bpmnProcessId", job.getBpmnProcessId());
-        jsonJob.put("elementInstanceKey", job.getElementInstanceKey());
-        jsonJob.put("jobKey", job.getKey());
-        jsonJob.put("jobType", job.getType());
-        jsonJob.put("workflowElementId", job.getElementId());
-        jsonJob.put("workflowDefinitionVersion", job.getProcessDefinitionVersion());
-        jsonJob.put("workflowKey", job.getProcessDefinitionKey());
-        jsonJob.put("workflowInstanceKey", job.getProcessInstanceKey());
-        log.info("Job started: {}", jsonJob.toString(4));
+    private static void setMdcContext(Map<String, String> mdcContext) {
+        if (mdcContext != null) {
+            MDC.setContextMap(mdcContext);
+        }
     }
 
     /**
@@ -145,25 +452,35 @@ public class ZeebeWorkers {
     }
 
     /**
-     * Check result of the API call and set variables in Zeebe accordingly.
+     * Check result of the API call and build the variables to be set in Zeebe accordingly.
      *
      * @param operationName
      *            the operation name
      * @param ex
      *            {@link Exchange}
-     * @param variables
-     *            a map of existing variables to be updated
+     * @return a map of the variables resulting from the operation
      */
-    private void checkOperationResultAndSetVariables(String operationName, Exchange ex, Map<String, Object> variables) {
+    private Map<String, Object> getOperationResult(String operationName, Exchange ex) {
+        Map<String, Object> variables = new HashMap<>();
         Boolean isOperationFailed = ex.getProperty(operationName, boolean.class);
 
         variables.put(operationName, isOperationFailed);
+        if (Boolean.TRUE.equals(ex.getProperty(SETTLEMENT_QUEUED))) {
+            // The confirmation is replayed by the outbox, so the job must neither carry the Fineract error nor be
+            // retried, which would add the confirmation to the outbox again
+            variables.put(SETTLEMENT_QUEUED, true);
+            variables.put(operationName, !Boolean.FALSE.equals(isOperationFailed));
+            return variables;
+        }
         if (isOperationFailed == null || isOperationFailed) {
             variables.put(operationName, true);
             variables.put(ERROR_INFORMATION, ex.getIn().getBody(String.class));
-            variables.put(ERROR_CODE, ex.getIn().getHeader("CamelHttpResponseCode"));
+            // A fail fast error code takes precedence over the HTTP status
+            Object errorCode = ex.getProperty(ERROR_CODE);
+            variables.put(ERROR_CODE, errorCode != null ? errorCode : ex.getIn().getHeader("CamelHttpResponseCode"));
             variables.put(ERROR_DESCRIPTION,
                     ConnectionUtils.parseErrorDescriptionFromJsonPayload(ex.getIn().getBody(String.class)));
         }
+        return variables;
     }
 }
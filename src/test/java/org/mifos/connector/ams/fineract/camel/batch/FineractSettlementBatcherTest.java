@@ -0,0 +1,239 @@
+package org.mifos.connector.ams.fineract.camel.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationBatchItemResponse;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FineractSettlementBatcherTest {
+
+    private static final String BATCH_ENDPOINT = "direct:transfer-settlement-batch";
+    private static final String TENANT = "mfi-a";
+    // Max wait long enough for a batch never to be flushed by the timer during a test
+    private static final long NO_WAIT_FLUSH = 60_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<List<FineractConfirmationRequestDto>> sentBatches = new CopyOnWriteArrayList<>();
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private FineractSettlementBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+        producerTemplate = mock(ProducerTemplate.class);
+        batcher = new FineractSettlementBatcher(camelContext, producerTemplate, objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+        camelContext.stop();
+    }
+
+    @Test
+    void sendsTheBatchOnceItReachesTheMaxSize() {
+        startBatcher(3, NO_WAIT_FLUSH);
+        stubFineract(200, this::successfulItems);
+
+        CompletableFuture<FineractConfirmationBatchItemResponse> first = batcher.submit(TENANT, confirmation("tx-1"));
+        CompletableFuture<FineractConfirmationBatchItemResponse> second = batcher.submit(TENANT, confirmation("tx-2"));
+        assertThat(first).isNotDone();
+        assertThat(second).isNotDone();
+        verify(producerTemplate, never()).send(anyString(), any(Processor.class));
+
+        CompletableFuture<FineractConfirmationBatchItemResponse> third = batcher.submit(TENANT, confirmation("tx-3"));
+
+        assertThat(sentBatches).hasSize(1);
+        assertThat(transactionIds(sentBatches.get(0))).containsExactly("tx-1", "tx-2", "tx-3");
+        assertThat(first.join().getStatusCode()).isEqualTo(200);
+        assertThat(second.join().getStatusCode()).isEqualTo(200);
+        assertThat(third.join().getStatusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void batchesTheConfirmationsOfEachTenantSeparately() {
+        startBatcher(2, NO_WAIT_FLUSH);
+        stubFineract(200, this::successfulItems);
+
+        batcher.submit(TENANT, confirmation("tx-1"));
+        batcher.submit("mfi-b", confirmation("tx-2"));
+        assertThat(sentBatches).isEmpty();
+
+        batcher.submit(TENANT, confirmation("tx-3"));
+
+        assertThat(sentBatches).hasSize(1);
+        assertThat(transactionIds(sentBatches.get(0))).containsExactly("tx-1", "tx-3");
+    }
+
+    @Test
+    void sendsAnIncompleteBatchOnceTheMaxWaitIsOver() throws Exception {
+        startBatcher(50, 20);
+        stubFineract(200, this::successfulItems);
+
+        CompletableFuture<FineractConfirmationBatchItemResponse> first = batcher.submit(TENANT, confirmation("tx-1"));
+        CompletableFuture<FineractConfirmationBatchItemResponse> second = batcher.submit(TENANT, confirmation("tx-2"));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(200);
+        assertThat(second.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(200);
+        assertThat(sentBatches).hasSize(1);
+        assertThat(transactionIds(sentBatches.get(0))).containsExactly("tx-1", "tx-2");
+    }
+
+    @Test
+    void completesEachConfirmationWithItsOwnResult() {
+        startBatcher(3, NO_WAIT_FLUSH);
+        // Items returned out of order, tx-2 being rejected and tx-3 missing
+        stubFineract(200, requests -> json(List.of(item("tx-2", 400, "{\"Message\":\"Account closed\"}"),
+                item("tx-1", 200, "{\"ReceiptId\":\"receipt-1\"}"))));
+
+        CompletableFuture<FineractConfirmationBatchItemResponse> first = batcher.submit(TENANT, confirmation("tx-1"));
+        CompletableFuture<FineractConfirmationBatchItemResponse> second = batcher.submit(TENANT, confirmation("tx-2"));
+        CompletableFuture<FineractConfirmationBatchItemResponse> third = batcher.submit(TENANT, confirmation("tx-3"));
+
+        assertThat(first.join().getStatusCode()).isEqualTo(200);
+        assertThat(first.join().getBody().get("ReceiptId").asText()).isEqualTo("receipt-1");
+        assertThat(second.join().getStatusCode()).isEqualTo(400);
+        assertThat(second.join().getBody().get("Message").asText()).isEqualTo("Account closed");
+        assertThat(third.join().getRemoteTransactionId()).isEqualTo("tx-3");
+        assertThat(third.join().getStatusCode()).isEqualTo(500);
+    }
+
+    @Test
+    void setsTheItemResultOnTheExchange() {
+        startBatcher(1, NO_WAIT_FLUSH);
+        stubFineract(200, requests -> json(List.of(item("tx-1", 200, "{\"ReceiptId\":\"receipt-1\"}"))));
+        Exchange exchange = new DefaultExchange(camelContext);
+        exchange.setProperty(FINERACT_TENANT, TENANT);
+        exchange.getIn().setBody(confirmation("tx-1"));
+
+        batcher.process(exchange);
+
+        assertThat(exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE)).isEqualTo(200);
+        assertThat(exchange.getIn().getBody(String.class)).isEqualTo("{\"ReceiptId\":\"receipt-1\"}");
+    }
+
+    @Test
+    void givesEachConfirmationTheResponseOfAFailedBatch() {
+        startBatcher(2, NO_WAIT_FLUSH);
+        stubFineract(503, requests -> "{\"Message\":\"Service unavailable\"}");
+
+        CompletableFuture<FineractConfirmationBatchItemResponse> first = batcher.submit(TENANT, confirmation("tx-1"));
+        CompletableFuture<FineractConfirmationBatchItemResponse> second = batcher.submit(TENANT, confirmation("tx-2"));
+
+        for (FineractConfirmationBatchItemResponse result : List.of(first.join(), second.join())) {
+            assertThat(result.getStatusCode()).isEqualTo(503);
+            assertThat(result.getBody().get("Message").asText()).isEqualTo("Service unavailable");
+        }
+    }
+
+    @Test
+    void failsEachConfirmationWhenTheBatchCallThrows() {
+        startBatcher(2, NO_WAIT_FLUSH);
+        when(producerTemplate.send(eq(BATCH_ENDPOINT), any(Processor.class))).thenAnswer(invocation -> {
+            Exchange exchange = new DefaultExchange(camelContext);
+            exchange.setException(new IllegalStateException("Connection refused"));
+            return exchange;
+        });
+
+        CompletableFuture<FineractConfirmationBatchItemResponse> first = batcher.submit(TENANT, confirmation("tx-1"));
+        CompletableFuture<FineractConfirmationBatchItemResponse> second = batcher.submit(TENANT, confirmation("tx-2"));
+
+        assertThatThrownBy(first::join).isInstanceOf(CompletionException.class)
+                .hasMessageContaining("Connection refused");
+        assertThatThrownBy(second::join).isInstanceOf(CompletionException.class)
+                .hasMessageContaining("Connection refused");
+    }
+
+    private void startBatcher(int maxBatchSize, long maxWaitMs) {
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(batcher, "maxWaitMs", maxWaitMs);
+        ReflectionTestUtils.setField(batcher, "senderPoolSize", 2);
+        batcher.start();
+    }
+
+    /**
+     * Stubs the batch confirmation route, recording the batches sent.
+     *
+     * @param statusCode
+     *            the HTTP status code of the batch response
+     * @param responseBody
+     *            builds the batch response body from the confirmations sent
+     */
+    @SuppressWarnings("unchecked")
+    private void stubFineract(int statusCode, Function<List<FineractConfirmationRequestDto>, String> responseBody) {
+        when(producerTemplate.send(eq(BATCH_ENDPOINT), any(Processor.class))).thenAnswer(invocation -> {
+            Exchange exchange = new DefaultExchange(camelContext);
+            invocation.getArgument(1, Processor.class).process(exchange);
+            assertThat(exchange.getProperty(FINERACT_TENANT)).isNotNull();
+            List<FineractConfirmationRequestDto> requests = (List<FineractConfirmationRequestDto>) exchange.getIn()
+                    .getBody();
+            sentBatches.add(requests);
+            exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, statusCode);
+            exchange.getIn().setBody(responseBody.apply(requests));
+            return exchange;
+        });
+    }
+
+    private String successfulItems(List<FineractConfirmationRequestDto> requests) {
+        List<FineractConfirmationBatchItemResponse> items = new ArrayList<>();
+        for (FineractConfirmationRequestDto request : requests) {
+            items.add(item(request.getRemoteTransactionId(), 200, "{}"));
+        }
+        return json(items);
+    }
+
+    private FineractConfirmationBatchItemResponse item(String transactionId, int statusCode, String body) {
+        try {
+            return new FineractConfirmationBatchItemResponse(transactionId, statusCode, objectMapper.readTree(body));
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private String json(List<FineractConfirmationBatchItemResponse> items) {
+        try {
+            return objectMapper.writeValueAsString(items);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static FineractConfirmationRequestDto confirmation(String transactionId) {
+        FineractConfirmationRequestDto confirmation = new FineractConfirmationRequestDto();
+        confirmation.setRemoteTransactionId(transactionId);
+        return confirmation;
+    }
+
+    private static List<String> transactionIds(List<FineractConfirmationRequestDto> batch) {
+        return batch.stream().map(FineractConfirmationRequestDto::getRemoteTransactionId).toList();
+    }
+}
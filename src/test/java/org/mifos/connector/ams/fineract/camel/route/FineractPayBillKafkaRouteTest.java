@@ -0,0 +1,165 @@
+package org.mifos.connector.ams.fineract.camel.route;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Paybill validations consumed from Kafka, run against an embedded Kafka broker and a WireMock stub of the Fineract
+ * endpoints, whose mappings reject the accounts starting with 9.
+ */
+@EmbeddedKafka(partitions = 1, topics = { FineractPayBillKafkaRouteTest.TOPIC,
+        FineractPayBillKafkaRouteTest.REPLY_TOPIC })
+@SpringBootTest(properties = { "camel.springboot.main-run-controller=false", "ams.paybill.kafka.enabled=true",
+        "ams.paybill.kafka.topic=" + FineractPayBillKafkaRouteTest.TOPIC,
+        "ams.paybill.kafka.reply-topic=" + FineractPayBillKafkaRouteTest.REPLY_TOPIC,
+        "camel.component.kafka.brokers=${spring.embedded.kafka.brokers}",
+        "camel.component.kafka.auto-offset-reset=earliest", "logging.level.ROOT=WARN" })
+class FineractPayBillKafkaRouteTest {
+
+    static final String TOPIC = "paybill-validation-requests";
+    static final String REPLY_TOPIC = "paybill-validation-results";
+    private static final String INSTITUTION = "mfi-a-paybill";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static WireMockServer fineractStub;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    private Producer<String, String> producer;
+    private Consumer<String, String> replyConsumer;
+
+    @BeforeAll
+    static void startStub() {
+        fineractStub = new WireMockServer(options().dynamicPort().usingFilesUnderClasspath("fineract-stub"));
+        fineractStub.start();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        fineractStub.stop();
+    }
+
+    @DynamicPropertySource
+    static void connectorProperties(DynamicPropertyRegistry registry) {
+        registry.add("fineract.base-url", () -> fineractStub.baseUrl() + "/fineract-provider/api/v1");
+        registry.add("camel.server-port", FineractPayBillKafkaRouteTest::freePort);
+    }
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> producerProps = KafkaTestUtils.producerProps(embeddedKafka);
+        producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producer = new KafkaProducer<>(producerProps);
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("paybill-validation-test", "false",
+                embeddedKafka);
+        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        replyConsumer = new KafkaConsumer<>(consumerProps);
+        embeddedKafka.consumeFromAnEmbeddedTopic(replyConsumer, REPLY_TOPIC);
+    }
+
+    @AfterEach
+    void tearDown() {
+        producer.close();
+        replyConsumer.close();
+    }
+
+    @Test
+    void publishesTheReconciledResultWithTheKeyOfThePaybill() {
+        sendPayBill("paybill-1", "24450523", "tx-kafka-1");
+
+        ConsumerRecord<String, String> reply = awaitReply("paybill-1");
+
+        JSONObject result = new JSONObject(reply.value());
+        assertThat(result.getBoolean("reconciled")).isTrue();
+        assertThat(result.getString("amsName")).isEqualTo("fineract");
+        assertThat(result.getString(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME)).isEqualTo(INSTITUTION);
+        assertThat(result.getString("transactionId")).isEqualTo("tx-kafka-1");
+        assertThat(result.getString("clientName")).isEqualTo("Load Test");
+        assertThat(reply.headers().lastHeader(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME)).isNull();
+    }
+
+    @Test
+    void publishesTheUnreconciledResultOfAnAccountRejectedByFineract() {
+        sendPayBill("paybill-2", "90000001", "tx-kafka-2");
+
+        ConsumerRecord<String, String> reply = awaitReply("paybill-2");
+
+        JSONObject result = new JSONObject(reply.value());
+        assertThat(result.getBoolean("reconciled")).isFalse();
+        assertThat(result.getString("transactionId")).isEqualTo("tx-kafka-2");
+    }
+
+    private void sendPayBill(String key, String account, String transactionId) {
+        String payBill = "{\"primaryIdentifier\":{\"key\":\"accountId\",\"value\":\"" + account + "\"},"
+                + "\"secondaryIdentifier\":{\"key\":\"MSISDN\",\"value\":\"254708374149\"},"
+                + "\"customData\":[{\"key\":\"transactionId\",\"value\":\"" + transactionId + "\"},"
+                + "{\"key\":\"currency\",\"value\":\"KES\"},{\"key\":\"amount\",\"value\":\"1500\"},"
+                + "{\"key\":\"getAccountDetails\",\"value\":\"true\"}]}";
+        ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, key, payBill);
+        record.headers().add(ACCT_HOLDING_INSTITUTION_ID_VARIABLE_NAME, INSTITUTION.getBytes(StandardCharsets.UTF_8));
+        producer.send(record);
+        producer.flush();
+    }
+
+    /**
+     * Polls the reply topic for the result of a paybill, the results of the other tests being skipped.
+     *
+     * @param key
+     *            the key of the paybill
+     * @return the result record
+     */
+    private ConsumerRecord<String, String> awaitReply(String key) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, String> record : replyConsumer.poll(Duration.ofMillis(200))) {
+                if (key.equals(record.key())) {
+                    return record;
+                }
+            }
+        }
+        throw new AssertionError("No result published for paybill " + key + " within " + TIMEOUT);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("No free port for the Camel REST server", e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.mifos.connector.ams.fineract.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class IdempotentOperationExecutorTest {
+
+    private static final String OPERATION = "transfer-settlement";
+    private static final String TRANSACTION = "tx-1";
+    private static final Map<String, Object> SETTLED = Map.of("transferSettlementFailed", false);
+    private static final Map<String, Object> FAILED = Map.of("transferSettlementFailed", true);
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private IdempotencyRepository repository;
+    private IdempotentOperationExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryIdempotencyRepository(60_000, 100);
+        executor = newExecutor(repository, true);
+    }
+
+    @Test
+    void replaysTheRecordedResultOfASuccessfulOperation() {
+        assertThat(execute(CompletableFuture.completedFuture(SETTLED))).isCompletedWithValue(SETTLED);
+
+        assertThat(execute(CompletableFuture.completedFuture(FAILED))).isCompletedWithValue(SETTLED);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void callsFineractAgainAfterAFailedOperation() {
+        assertThat(execute(CompletableFuture.completedFuture(FAILED))).isCompletedWithValue(FAILED);
+
+        assertThat(execute(CompletableFuture.completedFuture(SETTLED))).isCompletedWithValue(SETTLED);
+        assertThat(calls).hasValue(2);
+        assertThat(repository.find(OPERATION + ":" + TRANSACTION)).contains(SETTLED);
+    }
+
+    @Test
+    void joinsTheCallInFlightForTheSameTransaction() {
+        CompletableFuture<Map<String, Object>> call = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> first = execute(call);
+        CompletableFuture<Map<String, Object>> duplicate = execute(CompletableFuture.completedFuture(FAILED));
+
+        assertThat(duplicate).isSameAs(first).isNotDone();
+        call.complete(SETTLED);
+        assertThat(duplicate).isCompletedWithValue(SETTLED);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void passesTheFailureOfTheCallInFlightOnWithoutRecordingIt() {
+        CompletableFuture<Map<String, Object>> call = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> first = execute(call);
+        call.completeExceptionally(new IllegalStateException("Zeebe job failed"));
+
+        assertThat(first).isCompletedExceptionally();
+        assertThat(execute(CompletableFuture.completedFuture(SETTLED))).isCompletedWithValue(SETTLED);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void replaysAResultRecordedJustBeforeTheCallIsClaimed() {
+        // The first call completes between the first lookup of the duplicate and its putIfAbsent
+        IdempotencyRepository racingRepository = mock(IdempotencyRepository.class);
+        when(racingRepository.find(OPERATION + ":" + TRANSACTION)).thenReturn(Optional.empty(), Optional.of(SETTLED));
+        executor = newExecutor(racingRepository, true);
+
+        assertThat(execute(CompletableFuture.completedFuture(FAILED))).isCompletedWithValue(SETTLED);
+        assertThat(calls).hasValue(0);
+        verify(racingRepository, never()).save(any(), any());
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(executor, "inFlight")).isEmpty();
+    }
+
+    @Test
+    void callsFineractForEachDuplicateWhenDisabled() {
+        executor = newExecutor(repository, false);
+
+        execute(CompletableFuture.completedFuture(SETTLED));
+        execute(CompletableFuture.completedFuture(SETTLED));
+
+        assertThat(calls).hasValue(2);
+        assertThat(repository.find(OPERATION + ":" + TRANSACTION)).isEmpty();
+    }
+
+    private CompletableFuture<Map<String, Object>> execute(CompletableFuture<Map<String, Object>> result) {
+        return executor.execute(OPERATION, TRANSACTION, () -> {
+            calls.incrementAndGet();
+            return result;
+        }, variables -> !(Boolean) variables.get("transferSettlementFailed"));
+    }
+
+    private static IdempotentOperationExecutor newExecutor(IdempotencyRepository repository,
+            boolean isIdempotencyEnabled) {
+        IdempotentOperationExecutor executor = new IdempotentOperationExecutor(repository);
+        ReflectionTestUtils.setField(executor, "isIdempotencyEnabled", isIdempotencyEnabled);
+        return executor;
+    }
+}
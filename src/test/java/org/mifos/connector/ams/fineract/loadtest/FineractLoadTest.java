@@ -0,0 +1,275 @@
+package org.mifos.connector.ams.fineract.loadtest;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CHANNEL_REQUEST;
+import static org.mifos.connector.ams.fineract.metrics.ConnectorMetrics.FINERACT_REQUEST_TIMER;
+import static org.mifos.connector.ams.fineract.metrics.ConnectorMetrics.ZEEBE_JOB_TIMER;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.EXTERNAL_ID;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_FAILED;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.TRANSACTION_ID;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.global.GlobalSettings;
+import com.github.tomakehurst.wiremock.http.LogNormal;
+import io.camunda.zeebe.client.ZeebeClient;
+import io.camunda.zeebe.client.api.worker.JobWorker;
+import io.camunda.zeebe.process.test.api.ZeebeTestEngine;
+import io.camunda.zeebe.process.test.engine.EngineFactory;
+import io.camunda.zeebe.process.test.filters.RecordStream;
+import io.camunda.zeebe.protocol.record.intent.ProcessInstanceIntent;
+import io.camunda.zeebe.protocol.record.value.BpmnElementType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Load test of the Zeebe workers, run with {@code ./gradlew loadTest}. The connector runs against an in-process Zeebe
+ * engine and a WireMock stub of the Fineract endpoints, answering with a log-normally distributed latency. The bundled
+ * M-Pesa and TNM processes are deployed and instances of both are created: the M-Pesa instances go through the
+ * settlement job once the stubbed M-Pesa callback is received, and the TNM instances through the validation and
+ * settlement jobs once the stubbed pay request is received. The jobs of the other connectors are completed by stub
+ * workers.
+ *
+ * <p>
+ * The jobs completed per second, the p50/p95/p99 job latencies and the mix of job outcomes and Fineract response
+ * statuses are printed once all the instances are completed. The load is set through the system properties below, e.g.
+ * {@code ./gradlew loadTest -Ploadtest.instances=5000 -Ploadtest.latency-median=150}.
+ */
+@Tag("load")
+@SpringBootTest(properties = { "ams.local.enabled=true", "camel.springboot.main-run-controller=false",
+        "logging.level.ROOT=WARN" })
+class FineractLoadTest {
+
+    private static final String MPESA_PROCESS = "mpesa_flow_fineract-oaf";
+    private static final String TNM_PROCESS = "inbound_tnm_fineract-oaf";
+    private static final String VALIDATION_JOB = "transfer-validation-fineract";
+    private static final String SETTLEMENT_JOB = "transfer-settlement-fineract";
+    // Time the process timers wait for, long enough for them never to fire during a run
+    private static final String NEVER = "PT1H";
+
+    // Number of process instances of each process
+    private static final int INSTANCES = Integer.getInteger("loadtest.instances", 2000);
+    // Number of instances created in parallel
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 20);
+    // Percentages of the transactions rejected by the Fineract validation and failed by the Fineract confirmation
+    private static final int VALIDATION_ERROR_PERCENT = Integer.getInteger("loadtest.validation-error-percent", 2);
+    private static final int SETTLEMENT_ERROR_PERCENT = Integer.getInteger("loadtest.settlement-error-percent", 1);
+    // Median and spread of the log-normally distributed latency of the Fineract stub
+    private static final int LATENCY_MEDIAN_MS = Integer.getInteger("loadtest.latency-median", 80);
+    private static final double LATENCY_SIGMA = Double
+            .parseDouble(System.getProperty("loadtest.latency-sigma", "0.4"));
+    private static final Duration TIMEOUT = Duration
+            .ofSeconds(Integer.getInteger("loadtest.timeout-seconds", 600));
+
+    private static ZeebeTestEngine engine;
+    private static int gatewayPort;
+    private static WireMockServer fineractStub;
+
+    private final List<JobWorker> stubWorkers = new ArrayList<>();
+    private ZeebeClient zeebeClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void startEngineAndStub() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            gatewayPort = socket.getLocalPort();
+        }
+        engine = EngineFactory.create(gatewayPort);
+        engine.start();
+
+        // Mappings answering the accounts starting with 9 with a validation error and those starting with 8 with a
+        // confirmation error
+        fineractStub = new WireMockServer(options().dynamicPort().usingFilesUnderClasspath("fineract-stub")
+                .disableRequestJournal().asynchronousResponseEnabled(true).asynchronousResponseThreads(50));
+        fineractStub.start();
+        fineractStub.updateGlobalSettings(
+                GlobalSettings.builder().delayDistribution(new LogNormal(LATENCY_MEDIAN_MS, LATENCY_SIGMA)).build());
+    }
+
+    @AfterAll
+    static void stopEngineAndStub() {
+        fineractStub.stop();
+        engine.stop();
+    }
+
+    @DynamicPropertySource
+    static void connectorProperties(DynamicPropertyRegistry registry) {
+        registry.add("zeebe.broker.contactpoint", () -> "localhost:" + gatewayPort);
+        registry.add("fineract.base-url", () -> fineractStub.baseUrl() + "/fineract-provider/api/v1");
+        registry.add("camel.server-port", FineractLoadTest::freePort);
+    }
+
+    @BeforeEach
+    void deployProcesses() {
+        zeebeClient = engine.createClient();
+        zeebeClient.newDeployResourceCommand().addResourceFromClasspath(MPESA_PROCESS + ".bpmn")
+                .addResourceFromClasspath(TNM_PROCESS + ".bpmn").send().join();
+
+        // Stubbed M-Pesa API, calling back once the transfer is initiated
+        openStubWorker("init-transfer", transactionId -> publishMessage("transaction-request", transactionId,
+                Map.of(TRANSACTION_FAILED, false)));
+        for (String jobType : List.of("validation-success", "validation-failure", "transaction-success",
+                "transaction-failure", "notification-service", "get-transaction-status", "get-notification-status",
+                "delete-tnm-workflow-instancekey")) {
+            openStubWorker(jobType, transactionId -> {});
+        }
+    }
+
+    @AfterEach
+    void closeClient() {
+        stubWorkers.forEach(JobWorker::close);
+        zeebeClient.close();
+    }
+
+    @Test
+    void runsTheMpesaAndTnmProcesses() throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService creators = Executors.newFixedThreadPool(CONCURRENCY);
+        for (int i = 0; i < INSTANCES; i++) {
+            String index = String.valueOf(i);
+            creators.execute(() -> createMpesaInstance("load-test-mpesa-" + index));
+            creators.execute(() -> createTnmInstance("load-test-tnm-" + index));
+        }
+        creators.shutdown();
+        assertThat(creators.awaitTermination(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+
+        long completed = 0;
+        long deadline = start + TIMEOUT.toNanos();
+        while (completed < 2L * INSTANCES && System.nanoTime() < deadline) {
+            TimeUnit.SECONDS.sleep(1);
+            completed = completedInstances();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        report(elapsedSeconds);
+        assertThat(completed).as("completed process instances").isEqualTo(2L * INSTANCES);
+    }
+
+    private void createMpesaInstance(String transactionId) {
+        Map<String, Object> variables = transactionVariables(transactionId);
+        variables.put("timer", NEVER);
+        variables.put("isNotificationsSuccessEnabled", false);
+        variables.put("isNotificationsFailureEnabled", false);
+        zeebeClient.newCreateInstanceCommand().bpmnProcessId(MPESA_PROCESS).latestVersion().variables(variables)
+                .send().join();
+    }
+
+    private void createTnmInstance(String transactionId) {
+        Map<String, Object> variables = transactionVariables(transactionId);
+        variables.put("tnmPayRequestWaitPeriod", NEVER);
+        variables.put("isValidationReferencePresent", false);
+        zeebeClient.newCreateInstanceCommand().bpmnProcessId(TNM_PROCESS).latestVersion().variables(variables)
+                .send().join();
+        // Pay request sent by TNM, without the reference of an earlier validation
+        publishMessage("pendingPayRequest", transactionId, Map.of());
+    }
+
+    private Map<String, Object> transactionVariables(String transactionId) {
+        String channelRequest = "{\"payer\":[{\"partyIdType\":\"MSISDN\",\"partyIdIdentifier\":\"254708374149\"}],"
+                + "\"payee\":[{\"partyIdType\":\"ACCOUNTID\",\"partyIdIdentifier\":\"" + account() + "\"}],"
+                + "\"amount\":{\"amount\":\"1500\",\"currency\":\"KES\"}}";
+        Map<String, Object> variables = new HashMap<>();
+        variables.put(CHANNEL_REQUEST, channelRequest);
+        variables.put(TRANSACTION_ID, transactionId);
+        variables.put(EXTERNAL_ID, "LT-" + transactionId);
+        variables.put(TRANSACTION_FAILED, false);
+        return variables;
+    }
+
+    /**
+     * Draws the account of a transaction, its first digit picking the answer of the Fineract stub.
+     *
+     * @return the account number
+     */
+    private static String account() {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        String prefix = roll < VALIDATION_ERROR_PERCENT ? "9"
+                : roll < VALIDATION_ERROR_PERCENT + SETTLEMENT_ERROR_PERCENT ? "8" : "2";
+        return prefix + (10_000_000 + ThreadLocalRandom.current().nextInt(10_000_000));
+    }
+
+    private void publishMessage(String name, String transactionId, Map<String, Object> variables) {
+        zeebeClient.newPublishMessageCommand().messageName(name).correlationKey(transactionId)
+                .timeToLive(Duration.ofMinutes(10)).variables(variables).send().join();
+    }
+
+    /**
+     * Opens a worker completing the jobs of the given type.
+     *
+     * @param jobType
+     *            the job type
+     * @param afterCompletion
+     *            run with the transaction id of each job once it is completed
+     */
+    private void openStubWorker(String jobType, Consumer<String> afterCompletion) {
+        stubWorkers.add(zeebeClient.newWorker().jobType(jobType).handler((client, job) -> {
+            client.newCompleteCommand(job.getKey()).send().join();
+            afterCompletion.accept((String) job.getVariablesAsMap().get(TRANSACTION_ID));
+        }).maxJobsActive(CONCURRENCY * 2).open());
+    }
+
+    private long completedInstances() {
+        return RecordStream.of(engine.getRecordStreamSource()).processInstanceRecords()
+                .withIntent(ProcessInstanceIntent.ELEMENT_COMPLETED).withBpmnElementType(BpmnElementType.PROCESS)
+                .stream().count();
+    }
+
+    private void report(double elapsedSeconds) {
+        long jobs = 0;
+        for (Timer timer : meterRegistry.find(ZEEBE_JOB_TIMER).timers()) {
+            jobs += timer.count();
+        }
+        System.out.printf("%nCompleted %d jobs in %.1fs: %.1f jobs/sec%n", jobs, elapsedSeconds, jobs / elapsedSeconds);
+        for (String jobType : List.of(VALIDATION_JOB, SETTLEMENT_JOB)) {
+            Timer timer = meterRegistry.find(ZEEBE_JOB_TIMER).tag("type", jobType).tag("outcome", "success").timer();
+            if (timer == null) {
+                continue;
+            }
+            StringBuilder latencies = new StringBuilder(jobType).append(" latency");
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                latencies.append(String.format(" p%.0f %.1fms,", percentile.percentile() * 100,
+                        percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            System.out.println(latencies);
+        }
+        System.out.println("Job outcomes:");
+        meterRegistry.find(ZEEBE_JOB_TIMER).timers().forEach(timer -> System.out.printf("  %s %s: %d%n",
+                timer.getId().getTag("type"), timer.getId().getTag("outcome"), timer.count()));
+        System.out.println("Fineract responses:");
+        meterRegistry.find(FINERACT_REQUEST_TIMER).timers().forEach(timer -> System.out.printf("  %s %s: %d%n",
+                timer.getId().getTag("endpoint"), timer.getId().getTag("status"), timer.count()));
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("No free port for the Camel REST server", e);
+        }
+    }
+}
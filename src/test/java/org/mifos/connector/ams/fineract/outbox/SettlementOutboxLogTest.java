@@ -0,0 +1,110 @@
+package org.mifos.connector.ams.fineract.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SettlementOutboxLogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reloadsTheEntriesNotDone() throws IOException {
+        try (SettlementOutboxLog outboxLog = open()) {
+            outboxLog.load();
+            outboxLog.add(entry(1, "tx-1"));
+            outboxLog.add(entry(2, "tx-2"));
+            outboxLog.add(entry(3, "tx-3"));
+            outboxLog.done(2);
+        }
+
+        try (SettlementOutboxLog outboxLog = open()) {
+            assertThat(transactionIds(outboxLog.load())).containsExactly("tx-1", "tx-3");
+            assertThat(outboxLog.getDoneRecords()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void keepsTheEntriesAddedAfterAPartiallyWrittenRecord() throws IOException {
+        try (SettlementOutboxLog outboxLog = open()) {
+            outboxLog.load();
+            outboxLog.add(entry(1, "tx-1"));
+        }
+        // The connector stopped while appending the record of tx-2
+        Files.write(directory.resolve("settlements.log"),
+                "{\"type\":\"ADD\",\"id\":2,\"tenant\":\"def".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (SettlementOutboxLog outboxLog = open()) {
+            assertThat(transactionIds(outboxLog.load())).containsExactly("tx-1");
+            outboxLog.add(entry(3, "tx-3"));
+        }
+
+        try (SettlementOutboxLog outboxLog = open()) {
+            assertThat(transactionIds(outboxLog.load())).containsExactly("tx-1", "tx-3");
+        }
+    }
+
+    @Test
+    void cutsOffALogMadeOfAPartiallyWrittenRecordOnly() throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("settlements.log"), "{\"type\":\"AD".getBytes(StandardCharsets.UTF_8));
+
+        try (SettlementOutboxLog outboxLog = open()) {
+            assertThat(outboxLog.load()).isEmpty();
+            outboxLog.add(entry(1, "tx-1"));
+        }
+
+        try (SettlementOutboxLog outboxLog = open()) {
+            assertThat(transactionIds(outboxLog.load())).containsExactly("tx-1");
+        }
+    }
+
+    @Test
+    void reloadsTheEntriesKeptAndAddedAfterACompaction() throws IOException {
+        try (SettlementOutboxLog outboxLog = open()) {
+            outboxLog.load();
+            SettlementOutboxEntry first = entry(1, "tx-1");
+            SettlementOutboxEntry third = entry(3, "tx-3");
+            outboxLog.add(first);
+            outboxLog.add(entry(2, "tx-2"));
+            outboxLog.add(third);
+            outboxLog.done(2);
+
+            outboxLog.compact(List.of(first, third));
+            assertThat(outboxLog.getDoneRecords()).isZero();
+            outboxLog.add(entry(4, "tx-4"));
+            outboxLog.done(1);
+        }
+
+        assertThat(Files.readAllLines(directory.resolve("settlements.log"))).hasSize(4);
+        assertThat(directory.resolve("settlements.log.compacted")).doesNotExist();
+        try (SettlementOutboxLog outboxLog = open()) {
+            assertThat(transactionIds(outboxLog.load())).containsExactly("tx-3", "tx-4");
+        }
+    }
+
+    private SettlementOutboxLog open() throws IOException {
+        return new SettlementOutboxLog(directory, objectMapper, false);
+    }
+
+    private static SettlementOutboxEntry entry(long id, String transactionId) {
+        return new SettlementOutboxEntry(id, "default", "account-" + id, transactionId,
+                "{\"RemoteTransactionId\":\"" + transactionId + "\"}");
+    }
+
+    private static List<String> transactionIds(List<SettlementOutboxEntry> entries) {
+        return entries.stream().map(SettlementOutboxEntry::getTransactionId).toList();
+    }
+}
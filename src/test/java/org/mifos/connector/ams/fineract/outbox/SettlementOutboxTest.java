@@ -0,0 +1,353 @@
+package org.mifos.connector.ams.fineract.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.CAMEL_HTTP_RESPONSE_CODE;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_CIRCUIT_OPEN_ERROR_CODE;
+import static org.mifos.connector.ams.fineract.camel.config.CamelProperties.FINERACT_TENANT;
+import static org.mifos.connector.ams.fineract.metrics.ConnectorMetrics.SETTLEMENT_OUTBOX_REPLAYS_COUNTER;
+import static org.mifos.connector.ams.fineract.zeebe.ZeebeVariables.ERROR_CODE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.util.concurrent.SynchronousExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationBatchItemResponse;
+import org.mifos.connector.ams.fineract.data.FineractConfirmationRequestDto;
+import org.mifos.connector.ams.fineract.metrics.ConnectorMetrics;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SettlementOutboxTest {
+
+    private static final String CONFIRMATION_ENDPOINT = "direct:fineract-confirmation";
+    private static final String BATCH_ENDPOINT = "direct:fineract-confirmation-batch";
+    private static final String TENANT = "default";
+    private static final long INITIAL_BACKOFF = 60_000;
+    private static final long MAX_BACKOFF = 100_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Transaction ids of the confirmations replayed one by one, in the order they were sent
+    private final List<String> replayed = new CopyOnWriteArrayList<>();
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private SettlementOutbox outbox;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+        producerTemplate = mock(ProducerTemplate.class);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        outbox.stop();
+        camelContext.stop();
+    }
+
+    @Test
+    void replaysTheConfirmationsOfAnAccountOneAtATimeInOrder() throws IOException {
+        startOutbox(2, false);
+        stubConfirmation(transactionId -> 200);
+        offer("tx-1", "account-a");
+        offer("tx-2", "account-a");
+        offer("tx-3", "account-b");
+
+        drain();
+        assertThat(replayed).containsExactly("tx-1", "tx-3");
+        assertThat(outbox.getPending()).isEqualTo(1);
+
+        drain();
+        assertThat(replayed).containsExactly("tx-1", "tx-3", "tx-2");
+        assertThat(outbox.getPending()).isZero();
+        assertThat(replays("success")).isEqualTo(3);
+    }
+
+    @Test
+    void holdsTheNextConfirmationsOfAnAccountWhileItsFirstOneIsRetried() throws IOException {
+        startOutbox(2, false);
+        stubConfirmation(transactionId -> "tx-1".equals(transactionId) ? 503 : 200);
+        offer("tx-1", "account-a");
+        offer("tx-2", "account-a");
+
+        drain();
+        makeDue();
+        drain();
+
+        assertThat(replayed).containsExactly("tx-1", "tx-1");
+        assertThat(outbox.getPending()).isEqualTo(2);
+    }
+
+    @Test
+    void retriesAnUnavailableFineractWithAnExponentialBackoff() throws IOException {
+        startOutbox(2, false);
+        stubConfirmation(transactionId -> 503);
+        offer("tx-1", "account-a");
+
+        drain();
+        SettlementOutboxEntry entry = head();
+        assertThat(entry.getAttempts()).isEqualTo(1);
+        assertThat(backoffMillis(entry)).isBetween(INITIAL_BACKOFF - 1_000, INITIAL_BACKOFF);
+
+        // Not due before its backoff is over
+        drain();
+        assertThat(replayed).hasSize(1);
+
+        makeDue();
+        drain();
+        assertThat(entry.getAttempts()).isEqualTo(2);
+        // Doubled, and capped by the max backoff
+        assertThat(backoffMillis(entry)).isBetween(MAX_BACKOFF - 1_000, MAX_BACKOFF);
+        assertThat(replays("retry")).isEqualTo(2);
+        assertThat(outbox.getPending()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsAConfirmationRejectedByFineract() throws IOException {
+        startOutbox(2, false);
+        stubConfirmation(transactionId -> 400);
+        offer("tx-1", "account-a");
+
+        drain();
+
+        assertThat(outbox.getPending()).isZero();
+        assertThat(replays("rejected")).isEqualTo(1);
+        assertThat(replays("retry")).isZero();
+    }
+
+    @Test
+    void retriesAConfirmationWhoseReplayThrows() throws IOException {
+        startOutbox(2, false);
+        when(producerTemplate.send(eq(CONFIRMATION_ENDPOINT), any(Processor.class))).thenAnswer(invocation -> {
+            Exchange exchange = new DefaultExchange(camelContext);
+            exchange.setException(new IllegalStateException("Connection refused"));
+            return exchange;
+        });
+        offer("tx-1", "account-a");
+
+        drain();
+
+        assertThat(outbox.getPending()).isEqualTo(1);
+        assertThat(replays("retry")).isEqualTo(1);
+    }
+
+    @Test
+    void retriesAConfirmationFailedFast() throws IOException {
+        startOutbox(2, false);
+        when(producerTemplate.send(eq(CONFIRMATION_ENDPOINT), any(Processor.class))).thenAnswer(invocation -> {
+            Exchange exchange = new DefaultExchange(camelContext);
+            exchange.setProperty(ERROR_CODE, FINERACT_CIRCUIT_OPEN_ERROR_CODE);
+            exchange.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, 503);
+            return exchange;
+        });
+        offer("tx-1", "account-a");
+
+        drain();
+
+        assertThat(outbox.getPending()).isEqualTo(1);
+        assertThat(replays("retry")).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotKeepAConfirmationRejectedByFineract() throws IOException {
+        startOutbox(2, false);
+        Exchange rejected = new DefaultExchange(camelContext);
+        rejected.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, 400);
+
+        assertThat(outbox.offer(rejected, TENANT, confirmation("tx-1", "account-a"))).isFalse();
+        assertThat(outbox.getPending()).isZero();
+    }
+
+    @Test
+    void replaysTheConfirmationsOfATenantInABatch() throws IOException {
+        startOutbox(2, true);
+        List<String> batchBodies = new ArrayList<>();
+        when(producerTemplate.send(eq(BATCH_ENDPOINT), any(Processor.class))).thenAnswer(invocation -> {
+            Exchange exchange = send(invocation.getArgument(1, Processor.class));
+            batchBodies.add(exchange.getIn().getBody(String.class));
+            exchange.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, 200);
+            exchange.getIn().setBody(objectMapper.writeValueAsString(
+                    List.of(new FineractConfirmationBatchItemResponse("tx-1", 200, null),
+                            new FineractConfirmationBatchItemResponse("tx-2", 400, null))));
+            return exchange;
+        });
+        offer("tx-1", "account-a");
+        offer("tx-2", "account-b");
+        offer("tx-3", "account-c");
+
+        drain();
+
+        assertThat(batchBodies).hasSize(1);
+        assertThat(batchBodies.get(0)).contains("tx-1", "tx-2", "tx-3");
+        verify(producerTemplate, never()).send(eq(CONFIRMATION_ENDPOINT), any(Processor.class));
+        // tx-3 is missing from the batch response, and is retried
+        assertThat(replays("success")).isEqualTo(1);
+        assertThat(replays("rejected")).isEqualTo(1);
+        assertThat(replays("retry")).isEqualTo(1);
+        assertThat(outbox.getPending()).isEqualTo(1);
+    }
+
+    @Test
+    void replaysTheConfirmationsOneByOneWhenTheBatchIsAnsweredWithAClientError() throws IOException {
+        startOutbox(2, true);
+        when(producerTemplate.send(eq(BATCH_ENDPOINT), any(Processor.class))).thenAnswer(invocation -> {
+            Exchange exchange = send(invocation.getArgument(1, Processor.class));
+            exchange.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, 404);
+            return exchange;
+        });
+        stubConfirmation(transactionId -> 200);
+        offer("tx-1", "account-a");
+        offer("tx-2", "account-b");
+
+        drain();
+
+        verify(producerTemplate, times(1)).send(eq(BATCH_ENDPOINT), any(Processor.class));
+        assertThat(replayed).containsExactly("tx-1", "tx-2");
+        assertThat(replays("success")).isEqualTo(2);
+        assertThat(outbox.getPending()).isZero();
+    }
+
+    @Test
+    void reloadsThePendingConfirmationsAfterACompaction() throws IOException {
+        startOutbox(2, false);
+        stubConfirmation(transactionId -> "tx-3".equals(transactionId) ? 503 : 200);
+        offer("tx-1", "account-a");
+        offer("tx-2", "account-b");
+        offer("tx-3", "account-c");
+
+        drain();
+        assertThat(outbox.getPending()).isEqualTo(1);
+        outbox.stop();
+
+        replayed.clear();
+        startOutbox(2, false);
+        assertThat(outbox.getPending()).isEqualTo(1);
+        stubConfirmation(transactionId -> 200);
+        drain();
+        assertThat(replayed).containsExactly("tx-3");
+        assertThat(outbox.getPending()).isZero();
+    }
+
+    /**
+     * Starts an outbox in the temporary directory, whose drain rounds are run by the test and whose replays are run on
+     * the thread of the drain round.
+     *
+     * @param compactionThreshold
+     *            the number of done entries after which the log is compacted
+     * @param isBatchReplayEnabled
+     *            whether the confirmations of a tenant are replayed in a batch
+     */
+    private void startOutbox(long compactionThreshold, boolean isBatchReplayEnabled) throws IOException {
+        outbox = new SettlementOutbox(camelContext, producerTemplate, objectMapper,
+                new ConnectorMetrics(meterRegistry));
+        ReflectionTestUtils.setField(outbox, "isOutboxEnabled", true);
+        ReflectionTestUtils.setField(outbox, "directory", directory.toString());
+        ReflectionTestUtils.setField(outbox, "isFsyncEnabled", false);
+        ReflectionTestUtils.setField(outbox, "pollInterval", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(outbox, "batchSize", 10);
+        ReflectionTestUtils.setField(outbox, "maxInFlight", 10);
+        ReflectionTestUtils.setField(outbox, "isBatchReplayEnabled", isBatchReplayEnabled);
+        ReflectionTestUtils.setField(outbox, "initialBackoff", INITIAL_BACKOFF);
+        ReflectionTestUtils.setField(outbox, "maxBackoff", MAX_BACKOFF);
+        ReflectionTestUtils.setField(outbox, "compactionThreshold", compactionThreshold);
+        outbox.start();
+        ReflectionTestUtils.setField(outbox, "replayExecutor", new SynchronousExecutorService());
+    }
+
+    /**
+     * Stubs the confirmation route, recording the transaction ids replayed. The stub replaces the previous one without
+     * calling it.
+     *
+     * @param statusCode
+     *            gives the HTTP status code answered for a transaction id
+     */
+    private void stubConfirmation(Function<String, Integer> statusCode) {
+        doAnswer(invocation -> {
+            Exchange exchange = send(invocation.getArgument(1, Processor.class));
+            assertThat(exchange.getProperty(FINERACT_TENANT)).isEqualTo(TENANT);
+            String transactionId = objectMapper.readTree(exchange.getIn().getBody(String.class))
+                    .get("RemoteTransactionId").asText();
+            replayed.add(transactionId);
+            exchange.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, statusCode.apply(transactionId));
+            return exchange;
+        }).when(producerTemplate).send(eq(CONFIRMATION_ENDPOINT), any(Processor.class));
+    }
+
+    private Exchange send(Processor processor) throws Exception {
+        Exchange exchange = new DefaultExchange(camelContext);
+        processor.process(exchange);
+        return exchange;
+    }
+
+    private void offer(String transactionId, String account) {
+        Exchange failed = new DefaultExchange(camelContext);
+        failed.getIn().setHeader(CAMEL_HTTP_RESPONSE_CODE, 503);
+        assertThat(outbox.offer(failed, TENANT, confirmation(transactionId, account))).isTrue();
+    }
+
+    private void drain() {
+        ReflectionTestUtils.invokeMethod(outbox, "drain");
+    }
+
+    /**
+     * Makes the entries being retried due now.
+     */
+    private void makeDue() {
+        queues().values().stream().flatMap(Deque::stream)
+                .forEach(entry -> entry.setNextAttemptNanos(System.nanoTime()));
+    }
+
+    private SettlementOutboxEntry head() {
+        return queues().values().iterator().next().peekFirst();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Deque<SettlementOutboxEntry>> queues() {
+        return (Map<String, Deque<SettlementOutboxEntry>>) ReflectionTestUtils.getField(outbox, "queues");
+    }
+
+    private double replays(String outcome) {
+        return meterRegistry.counter(SETTLEMENT_OUTBOX_REPLAYS_COUNTER, "outcome", outcome).count();
+    }
+
+    private static long backoffMillis(SettlementOutboxEntry entry) {
+        return TimeUnit.NANOSECONDS.toMillis(entry.getNextAttemptNanos() - System.nanoTime());
+    }
+
+    private static FineractConfirmationRequestDto confirmation(String transactionId, String account) {
+        FineractConfirmationRequestDto confirmation = new FineractConfirmationRequestDto();
+        confirmation.setRemoteTransactionId(transactionId);
+        confirmation.setAccount(account);
+        return confirmation;
+    }
+}
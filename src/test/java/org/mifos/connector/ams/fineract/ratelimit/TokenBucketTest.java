@@ -0,0 +1,87 @@
+package org.mifos.connector.ams.fineract.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    // The bucket is refilled by one token every 250 milliseconds
+    private static final double PERMITS_PER_SECOND = 4;
+    private static final long REFILL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final AtomicLong now = new AtomicLong();
+    private final TokenBucket bucket = new TokenBucket(PERMITS_PER_SECOND, 2, now::get);
+
+    @Test
+    void allowsABurstUpToTheCapacity() {
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+
+        now.addAndGet(REFILL_NANOS);
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void isNotRefilledPastItsCapacity() {
+        assertThat(bucket.tryAcquire()).isTrue();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void queuesTheReservationsBehindEachOtherWithANegativeBalance() {
+        long maxWait = TimeUnit.SECONDS.toNanos(1);
+        assertThat(bucket.reserve(maxWait)).isZero();
+        assertThat(bucket.reserve(maxWait)).isZero();
+
+        assertThat(bucket.reserve(maxWait)).isEqualTo(REFILL_NANOS);
+        assertThat(bucket.reserve(maxWait)).isEqualTo(2 * REFILL_NANOS);
+        // The tokens refilled go to the reservations first
+        now.addAndGet(REFILL_NANOS);
+        assertThat(bucket.tryAcquire()).isFalse();
+        assertThat(bucket.reserve(maxWait)).isEqualTo(2 * REFILL_NANOS);
+    }
+
+    @Test
+    void reservesNothingWhenTheWaitIsOverTheMaxWait() {
+        bucket.reserve(0);
+        bucket.reserve(0);
+        assertThat(bucket.reserve(REFILL_NANOS)).isEqualTo(REFILL_NANOS);
+
+        assertThat(bucket.reserve(REFILL_NANOS)).isEqualTo(-1);
+        assertThat(bucket.reserve(2 * REFILL_NANOS)).isEqualTo(2 * REFILL_NANOS);
+    }
+
+    @Test
+    void givesBackTheTokensOfTheCallsNotMade() {
+        long maxWait = TimeUnit.SECONDS.toNanos(1);
+        bucket.reserve(maxWait);
+        bucket.reserve(maxWait);
+        bucket.reserve(maxWait);
+
+        bucket.release();
+        assertThat(bucket.reserve(maxWait)).isEqualTo(REFILL_NANOS);
+        bucket.release();
+        bucket.release();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void givesBackTokensUpToTheCapacityOnly() {
+        bucket.release();
+        bucket.release();
+
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+}
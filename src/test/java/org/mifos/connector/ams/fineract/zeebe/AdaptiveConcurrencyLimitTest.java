@@ -0,0 +1,121 @@
+package org.mifos.connector.ams.fineract.zeebe;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long LATENCY_THRESHOLD_MILLIS = 1_000;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(2 * LATENCY_THRESHOLD_MILLIS);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void growsByAboutOneSlotPerRoundOfFastJobs() {
+        AdaptiveConcurrencyLimit limit = newLimit(4, 1, 10);
+        assertThat(limit.tryAcquire(4)).isEqualTo(4);
+
+        // 4 + 1/4 + 1/4.25 + 1/4.49 + 1/4.71 is just under 5
+        completeFastJobsWhileFull(limit, 4);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        completeFastJobsWhileFull(limit, 1);
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void doesNotGrowWhenTheLimitIsNotInUse() {
+        AdaptiveConcurrencyLimit limit = newLimit(4, 1, 10);
+
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire(1);
+            limit.release(FAST, false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void doesNotGrowPastTheMaxLimit() {
+        AdaptiveConcurrencyLimit limit = newLimit(4, 1, 5);
+        limit.tryAcquire(4);
+
+        completeFastJobsWhileFull(limit, 20);
+
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void backsOffOncePerLatencyWindow() {
+        AdaptiveConcurrencyLimit limit = newLimit(8, 1, 10);
+        limit.tryAcquire(8);
+
+        limit.release(FAST, true);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        // The other jobs of the same round only back off once
+        limit.release(FAST, true);
+        limit.release(SLOW, false);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(LATENCY_THRESHOLD_MILLIS - 1));
+        limit.release(FAST, true);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.getDecreases()).isEqualTo(1);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        limit.release(SLOW, false);
+        assertThat(limit.getLimit()).isEqualTo(2);
+        assertThat(limit.getDecreases()).isEqualTo(2);
+        assertThat(limit.getInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotBackOffBelowTheMinLimit() {
+        AdaptiveConcurrencyLimit limit = newLimit(4, 3, 10);
+        limit.tryAcquire(4);
+
+        limit.release(FAST, true);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(LATENCY_THRESHOLD_MILLIS));
+        limit.release(FAST, true);
+
+        assertThat(limit.getLimit()).isEqualTo(3);
+        assertThat(limit.getDecreases()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsAFixedLimitWhenTheMinAndMaxLimitsAreEqual() {
+        AdaptiveConcurrencyLimit limit = newLimit(4, 4, 4);
+        limit.tryAcquire(4);
+
+        limit.release(FAST, true);
+        completeFastJobsWhileFull(limit, 10);
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.getDecreases()).isZero();
+    }
+
+    @Test
+    void takesTheSlotsAvailableUnderTheLimit() {
+        AdaptiveConcurrencyLimit limit = newLimit(4, 1, 10);
+
+        assertThat(limit.tryAcquire(10)).isEqualTo(4);
+        assertThat(limit.tryAcquire(1)).isZero();
+        limit.release(1);
+        assertThat(limit.getInFlight()).isEqualTo(3);
+        assertThat(limit.tryAcquire(10)).isEqualTo(1);
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    private AdaptiveConcurrencyLimit newLimit(int initialLimit, int minLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, LATENCY_THRESHOLD_MILLIS, 0.5, now::get);
+    }
+
+    private static void completeFastJobsWhileFull(AdaptiveConcurrencyLimit limit, int jobs) {
+        for (int i = 0; i < jobs; i++) {
+            limit.release(FAST, false);
+            limit.tryAcquire(1);
+        }
+    }
+}